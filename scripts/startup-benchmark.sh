@@ -0,0 +1,57 @@
+#!/usr/bin/env bash
+#
+# Mede o cold start da aplicação: tempo até o health check responder e até a
+# primeira requisição de verdade (FIRST_REQUEST_PATH) concluída, segundo o
+# próprio serviço (/status → startup; health checks e /status não contam).
+#
+# Uso:
+#   scripts/startup-benchmark.sh [rodadas] [comando...]
+#
+# Exemplos:
+#   scripts/startup-benchmark.sh 5 java -jar target/satellite-image-generator-1.0.0.jar
+#   scripts/startup-benchmark.sh 5 docker run --rm -p 9000:9000 sitka-satellite-image-generator
+#
+# Variáveis: PORT (padrão 9000), SPRING_PROFILES_ACTIVE (padrão fast-start),
+# FIRST_REQUEST_PATH (padrão /analise-imagemdesatelite/imagem?endereco=benchmark)
+
+set -u
+
+RUNS="${1:-3}"
+shift || true
+if [ "$#" -eq 0 ]; then
+  set -- java -jar target/satellite-image-generator-1.0.0.jar
+fi
+
+PORT="${PORT:-9000}"
+export PORT
+export SPRING_PROFILES_ACTIVE="${SPRING_PROFILES_ACTIVE:-fast-start}"
+HEALTH_URL="http://localhost:${PORT}/analise-imagemdesatelite/health"
+STATUS_URL="http://localhost:${PORT}/status"
+FIRST_REQUEST_URL="http://localhost:${PORT}${FIRST_REQUEST_PATH:-/analise-imagemdesatelite/imagem?endereco=benchmark}"
+
+now_ms() {
+  date +%s%3N
+}
+
+for run in $(seq 1 "$RUNS"); do
+  start=$(now_ms)
+  "$@" > /dev/null 2>&1 &
+  pid=$!
+
+  until curl -sf "$HEALTH_URL" > /dev/null; do
+    if ! kill -0 "$pid" 2> /dev/null; then
+      echo "rodada $run: processo encerrou antes de responder" >&2
+      exit 1
+    fi
+    sleep 0.05
+  done
+  health=$(( $(now_ms) - start ))
+
+  curl -s -o /dev/null "$FIRST_REQUEST_URL"
+
+  startup=$(curl -sf "$STATUS_URL" | grep -o '"startup":{[^}]*}')
+  echo "rodada $run: health em ${health} ms | ${startup}"
+
+  kill "$pid" 2> /dev/null
+  wait "$pid" 2> /dev/null || true
+done
@@ -0,0 +1,81 @@
+package com.sitka.satellite.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mede o cold start: tempo do início da JVM até o contexto pronto e até a
+ * primeira requisição concluída. Health checks e /status (as sondas do
+ * orquestrador e do benchmark) não contam como primeira requisição.
+ *
+ * Com app.startup.exit-after-ready=true a aplicação encerra logo após ficar
+ * pronta; é assim que o Dockerfile gera o arquivo AppCDS na construção da imagem.
+ */
+@Component
+public class StartupMetrics extends OncePerRequestFilter implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupMetrics.class);
+
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final AtomicLong readyMillis = new AtomicLong();
+    private final AtomicLong firstRequestMillis = new AtomicLong();
+
+    @Value("${app.startup.exit-after-ready:false}")
+    private boolean exitAfterReady;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        readyMillis.compareAndSet(0, System.currentTimeMillis() - jvmStartMillis);
+        logger.info("✓ Aplicação pronta em {} ms (desde o início da JVM)", readyMillis.get());
+
+        if (exitAfterReady) {
+            logger.info("app.startup.exit-after-ready ativo: encerrando após a inicialização");
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (firstRequestMillis.get() == 0 && !isProbe(request.getRequestURI())
+                    && firstRequestMillis.compareAndSet(0, System.currentTimeMillis() - jvmStartMillis)) {
+                logger.info("✓ Primeira requisição ({}) concluída {} ms após o início da JVM",
+                        request.getRequestURI(), firstRequestMillis.get());
+            }
+        }
+    }
+
+    private static boolean isProbe(String uri) {
+        return uri.endsWith("/health") || uri.equals("/status");
+    }
+
+    /**
+     * Tempos de inicialização em ms (0 enquanto o marco não foi atingido)
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> startup = new LinkedHashMap<>();
+        startup.put("jvm_start", jvmStartMillis);
+        startup.put("ready_ms", readyMillis.get());
+        startup.put("first_request_ms", firstRequestMillis.get());
+        return startup;
+    }
+}
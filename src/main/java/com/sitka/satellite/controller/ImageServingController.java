@@ -0,0 +1,204 @@
+package com.sitka.satellite.controller;
+
+import com.sitka.satellite.service.ImageStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Serve as imagens armazenadas diretamente (CRM, gerador de relatórios etc.)
+ *
+ * GET /analise-imagemdesatelite/imagem/{chave}
+ * GET /analise-imagemdesatelite/imagem?endereco=...
+ *
+ * Suporta ETag forte, If-None-Match (304), Cache-Control e Range (um intervalo).
+ * Com o sendfile do Tomcat disponível (conector NIO/NIO2), o corpo vai do
+ * arquivo para o socket sem passar pela JVM. Sem ele, o arquivo é copiado em
+ * blocos para o OutputStream da resposta (transferTo para um canal que não é
+ * socket lê e escreve por um buffer, então esse caminho não é zero-copy).
+ * O ImageStore adia a remoção de blobs liberados, para que o arquivo ainda
+ * exista quando o sendfile o abrir depois do handler.
+ */
+@RestController
+@RequestMapping("/analise-imagemdesatelite/imagem")
+@CrossOrigin(origins = "*", exposedHeaders = {"ETag", "Content-Range", "Accept-Ranges"})
+public class ImageServingController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageServingController.class);
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Value("${app.image-store.max-age-seconds:86400}")
+    private long maxAgeSeconds;
+
+    @GetMapping("/{chave}")
+    public void imagemPorChave(@PathVariable String chave,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serve(imageStore.get(chave), request, response);
+    }
+
+    @GetMapping
+    public void imagemPorEndereco(@RequestParam String endereco,
+                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serve(imageStore.get(ImageStore.keyFor(endereco)), request, response);
+    }
+
+    private void serve(ImageStore.StoredImage image, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+
+        if (image == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Imagem não encontrada");
+            return;
+        }
+
+        String etag = image.getETag();
+        long size = image.getSize();
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + maxAgeSeconds);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = size - 1;
+
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.trim().equals(etag))) {
+            long[] bounds = parseRange(range, size);
+            if (bounds != null && bounds.length == 0) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        long length = end - start + 1;
+        response.setContentType("image/png");
+        response.setContentLengthLong(length);
+
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // O Tomcat envia o arquivo com sendfile(2) depois que o handler retorna
+            request.setAttribute(SENDFILE_FILENAME, image.getPath().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel file = FileChannel.open(image.getPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long sent = file.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        } catch (IOException e) {
+            // Cliente desconectou no meio da transferência
+            logger.debug("Transferência interrompida: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * If-None-Match: lista de ETags ou "*" (comparação fraca, como pede a RFC 7232)
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Interpreta "bytes=a-b", "bytes=a-" ou "bytes=-n".
+     * Retorna {inicio, fim}, null para ignorar o Range e responder com a imagem
+     * inteira (vários intervalos, formato desconhecido ou fim antes do início,
+     * que a RFC 7233 trata como sintaticamente inválido) ou um array vazio se
+     * o intervalo não for satisfazível (início além do tamanho ou sufixo zero).
+     */
+    static long[] parseRange(String header, long size) {
+        String value = header.trim();
+        if (!value.startsWith("bytes=") || value.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = value.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = size - 1;
+                if (!last.isEmpty()) {
+                    long requested = Long.parseLong(last);
+                    if (requested < start) {
+                        return null;
+                    }
+                    end = Math.min(requested, end);
+                }
+            }
+            if (start >= size) {
+                return new long[0];
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.sitka.satellite.controller;
+
+import com.sitka.satellite.service.ImageStore;
+import com.sitka.satellite.service.MemoryBudget;
+import com.sitka.satellite.service.PeerCacheService;
+import com.sitka.satellite.service.SatelliteImageService;
+import com.sitka.satellite.timing.StageTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Endpoint interno do cache entre instâncias: a dona da chave entrega a imagem
+ * para as outras instâncias (ver PeerCacheService)
+ *
+ * GET /internal/peer-cache/{chave}?endereco=...
+ */
+@RestController
+@RequestMapping(PeerCacheService.PATH)
+public class PeerCacheController {
+
+    private static final Logger logger = LoggerFactory.getLogger(PeerCacheController.class);
+
+    @Autowired
+    private PeerCacheService peerCacheService;
+
+    @Autowired
+    private SatelliteImageService satelliteImageService;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    @GetMapping("/{chave}")
+    public ResponseEntity<Resource> imagem(@PathVariable String chave, @RequestParam String endereco,
+                                           @RequestHeader(value = PeerCacheService.TOKEN_HEADER, required = false) String token) {
+        if (!peerCacheService.isEnabled() || !peerCacheService.isAuthorized(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (!chave.equals(ImageStore.keyFor(endereco))) {
+            return ResponseEntity.badRequest().build();
+        }
+        StageTimer.setAddress(endereco);
+
+        try (MemoryBudget.Permit permit = memoryBudget.acquire(SatelliteImageService.ESTIMATED_PIPELINE_BYTES)) {
+            if (permit == null) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+            ImageStore.StoredImage stored = satelliteImageService.storedImageForPeer(endereco);
+            if (stored == null) {
+                logger.warn("Imagem {} indisponível para outra instância", chave);
+                return ResponseEntity.notFound().build();
+            }
+            peerCacheService.recordServedToPeer();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_PNG)
+                    .eTag(stored.getETag())
+                    .body(new FileSystemResource(stored.getPath()));
+        }
+    }
+}
@@ -1,5 +1,15 @@
 package com.sitka.satellite.controller;
 
+import com.sitka.satellite.config.StartupMetrics;
+import com.sitka.satellite.imagery.ImageryService;
+import com.sitka.satellite.imagery.StaticMapsImageryProvider;
+import com.sitka.satellite.service.BufferPool;
+import com.sitka.satellite.service.ImageRefreshScheduler;
+import com.sitka.satellite.service.ImageStore;
+import com.sitka.satellite.service.MemoryBudget;
+import com.sitka.satellite.service.PeerCacheService;
+import com.sitka.satellite.service.WatiWebhookService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -10,6 +20,33 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class RootController {
 
+    @Autowired
+    private StartupMetrics startupMetrics;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    @Autowired
+    private BufferPool bufferPool;
+
+    @Autowired
+    private StaticMapsImageryProvider staticMapsImageryProvider;
+
+    @Autowired
+    private ImageryService imageryService;
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private ImageRefreshScheduler imageRefreshScheduler;
+
+    @Autowired
+    private PeerCacheService peerCacheService;
+
+    @Autowired
+    private WatiWebhookService watiWebhookService;
+
     /**
      * Endpoint raiz - Retorna boas-vindas
      * GET /
@@ -24,7 +61,11 @@ public class RootController {
         response.put("status", "UP");
         response.put("endpoints", new HashMap<String, String>() {{
             put("POST /analise-imagemdesatelite", "Gerar e enviar imagem de satélite via WATI");
+            put("POST /analise-imagemdesatelite/por-endereco/multiplos", "Gerar uma imagem e enviar para vários telefones");
+            put("POST /analise-imagemdesatelite/pacote", "Enviar pacote com várias vistas do imóvel");
+            put("GET /analise-imagemdesatelite/imagem/{chave}", "Imagem gerada (ETag, Range)");
             put("GET /analise-imagemdesatelite/health", "Health check");
+            put("POST /wati/webhook", "Mensagens recebidas do WATI (gera e envia a imagem do endereço)");
             put("GET /", "Informações da aplicação");
             put("GET /health", "Status da aplicação");
             put("GET /status", "Status detalhado");
@@ -61,6 +102,21 @@ public class RootController {
         response.put("java_version", System.getProperty("java.version"));
         response.put("os_name", System.getProperty("os.name"));
         response.put("description", "API para gerar imagens de satélite e enviar via WATI");
+        response.put("startup", startupMetrics.snapshot());
+
+        Runtime runtime = Runtime.getRuntime();
+        Map<String, Object> memoria = new HashMap<>();
+        memoria.put("heap_used_bytes", runtime.totalMemory() - runtime.freeMemory());
+        memoria.put("heap_max_bytes", runtime.maxMemory());
+        memoria.put("budget", memoryBudget.snapshot());
+        memoria.put("pools", bufferPool.snapshot());
+        response.put("memoria", memoria);
+        response.put("static_maps_hedging", staticMapsImageryProvider.hedgeSnapshot());
+        response.put("imagery", imageryService.snapshot());
+        response.put("image_store", imageStore.snapshot());
+        response.put("stale_while_revalidate", imageRefreshScheduler.snapshot());
+        response.put("peer_cache", peerCacheService.snapshot());
+        response.put("wati_webhook", watiWebhookService.snapshot());
         return ResponseEntity.ok(response);
     }
 
@@ -1,22 +1,35 @@
 package com.sitka.satellite.controller;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sitka.satellite.geo.Boundary;
+import com.sitka.satellite.service.FanOutService;
+import com.sitka.satellite.service.ImageStore;
+import com.sitka.satellite.service.MemoryBudget;
+import com.sitka.satellite.service.PropertyPackService;
 import com.sitka.satellite.service.SatelliteImageService;
 import com.sitka.satellite.service.GeocodingService;
+import com.sitka.satellite.timing.StageTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/analise-imagemdesatelite")
 @CrossOrigin(origins = "*")
+@Lazy(false)
 public class SatelliteImageController {
 
     private static final Logger logger = LoggerFactory.getLogger(SatelliteImageController.class);
@@ -27,6 +40,18 @@ public class SatelliteImageController {
     @Autowired
     private GeocodingService geocodingService;
 
+    // Endpoints fora do fluxo principal: criados só no primeiro uso
+    @Autowired
+    @Lazy
+    private FanOutService fanOutService;
+
+    @Autowired
+    @Lazy
+    private PropertyPackService propertyPackService;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
     /**
      * Endpoint para gerar e enviar imagem de satélite via WATI
      * 
@@ -35,24 +60,30 @@ public class SatelliteImageController {
      * Body:
      * {
      *   "telefone": "5511976169677",
-     *   "endereco": "Av. Dr. Guilherme Dumont Vilares, 2000, São Paulo, SP"
+     *   "endereco": "Av. Dr. Guilherme Dumont Vilares, 2000, São Paulo, SP",
+     *   "contorno": { "type": "Polygon", "coordinates": [[[-46.65, -23.56], ...]] }
      * }
+     *
+     * "contorno" é opcional (GeoJSON, objeto ou string): o limite do imóvel é
+     * desenhado sobre a imagem.
      */
         @PostMapping("/por-endereco")
         public ResponseEntity<Map<String, Object>> analisarImagemPorEndereco(
-            @RequestBody Map<String, String> request) {
+            @RequestBody Map<String, Object> request) {
 
         Map<String, Object> response = new HashMap<>();
+        MemoryBudget.Permit permit = null;
 
         try {
-            String telefone = request.get("telefone");
-            String endereco = request.get("endereco");
+            String telefone = asString(request.get("telefone"));
+            String endereco = asString(request.get("endereco"));
 
             logger.info("========================================================");
             logger.info("NOVA REQUISIÇÃO");
             logger.info("Telefone: " + telefone);
             logger.info("Endereço: " + endereco);
             logger.info("========================================================");
+            StageTimer.setAddress(endereco);
 
             // Validações
             if (telefone == null || telefone.isEmpty()) {
@@ -69,9 +100,30 @@ public class SatelliteImageController {
                 return ResponseEntity.badRequest().body(response);
             }
 
+            Boundary contorno = null;
+            if (request.get("contorno") != null) {
+                try {
+                    contorno = parseBoundary(request.get("contorno"));
+                } catch (RuntimeException e) {
+                    response.put("ok", false);
+                    response.put("result", "error");
+                    response.put("mensagem_imagemdesatelite", "Contorno GeoJSON inválido: " + e.getMessage());
+                    return ResponseEntity.badRequest().body(response);
+                }
+            }
+
+            // Reserva memória para o pipeline; num pico, espera ou recusa em vez de estourar o heap
+            permit = memoryBudget.acquire(SatelliteImageService.ESTIMATED_PIPELINE_BYTES);
+            if (permit == null) {
+                response.put("ok", false);
+                response.put("result", "error");
+                response.put("mensagem_imagemdesatelite", "Servidor ocupado, tente novamente em instantes");
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+            }
+
             // 1. Gerar imagem de satélite
             logger.info("Gerando imagem para: " + endereco);
-            BufferedImage image = satelliteImageService.generateSatelliteImage(endereco);
+            BufferedImage image = satelliteImageService.generateSatelliteImage(endereco, contorno);
 
             if (image == null) {
                 response.put("ok", false);
@@ -80,10 +132,12 @@ public class SatelliteImageController {
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
             }
 
-            // 2. Salvar imagem
-            String imagePath = satelliteImageService.saveImage(image, endereco);
+            // 2. Armazenar imagem (fica disponível em GET /analise-imagemdesatelite/imagem/{chave});
+            // com contorno, a chave inclui o contorno para não sobrescrever a imagem simples
+            String storeKey = contorno == null ? endereco : endereco + " contorno " + contorno.fingerprint();
+            ImageStore.StoredImage stored = satelliteImageService.storeImage(image, storeKey);
 
-            if (imagePath == null) {
+            if (stored == null) {
                 response.put("ok", false);
                 response.put("result", "error");
                 response.put("mensagem_imagemdesatelite", "Erro ao salvar imagem");
@@ -91,23 +145,15 @@ public class SatelliteImageController {
             }
 
             // 3. Enviar via WATI
-            boolean enviado = satelliteImageService.sendViaWati(telefone, imagePath, endereco);
+            boolean enviado = satelliteImageService.sendViaWati(telefone, stored.getPath().toString(), endereco);
 
             if (!enviado) {
-                // Deletar arquivo se falhar
-                satelliteImageService.deleteFile(imagePath);
-                satelliteImageService.deleteEmptyDirectory(endereco);
-
                 response.put("ok", false);
                 response.put("result", "error");
                 response.put("mensagem_imagemdesatelite", "Erro ao enviar imagem via WATI");
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
             }
 
-            // 4. Deletar arquivo após envio bem-sucedido
-            satelliteImageService.deleteFile(imagePath);
-            satelliteImageService.deleteEmptyDirectory(endereco);
-
             logger.info("========================================================");
             logger.info("✓ PROCESSO CONCLUÍDO COM SUCESSO");
             logger.info("========================================================");
@@ -115,8 +161,157 @@ public class SatelliteImageController {
             response.put("ok", true);
             response.put("result", "success");
             response.put("mensagem_imagemdesatelite", "Imagem de satélite enviada com sucesso!");
-            response.put("imagemdesatelite_url", imagePath);
+            response.put("imagemdesatelite_chave", stored.getKey());
+            response.put("imagemdesatelite_url", ImageStore.URL_PREFIX + stored.getKey());
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            logger.error("ERRO geral: " + e.getMessage());
+            e.printStackTrace();
+
+            response.put("ok", false);
+            response.put("result", "error");
+            response.put("mensagem_imagemdesatelite", "Erro interno do servidor: " + e.getMessage());
+
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        } finally {
+            if (permit != null) {
+                permit.close();
+            }
+        }
+    }
+
+    /**
+     * Endpoint para enviar a mesma imagem de satélite para vários telefones
+     *
+     * POST /analise-imagemdesatelite/por-endereco/multiplos
+     *
+     * A imagem é gerada uma única vez e enviada em paralelo para cada telefone.
+     *
+     * Body:
+     * {
+     *   "telefones": ["5511976169677", "5511989838304"],
+     *   "endereco": "Av. Dr. Guilherme Dumont Vilares, 2000, São Paulo, SP"
+     * }
+     *
+     * Status: 200 se todos os envios deram certo, 207 se só parte deu certo
+     * (detalhes em "resultados") e 502 se todos falharam.
+     */
+    @PostMapping("/por-endereco/multiplos")
+    public ResponseEntity<Map<String, Object>> analisarImagemParaVariosTelefones(
+            @RequestBody Map<String, Object> request) {
+
+        Map<String, Object> response = new HashMap<>();
+
+        try {
+            Object telefones = request.get("telefones");
+            Object endereco = request.get("endereco");
+
+            logger.info("========================================================");
+            logger.info("NOVA REQUISIÇÃO (MÚLTIPLOS DESTINATÁRIOS)");
+            logger.info("Telefones: " + telefones);
+            logger.info("Endereço: " + endereco);
+            logger.info("========================================================");
+            StageTimer.setAddress(endereco instanceof String ? (String) endereco : null);
+
+            if (!(telefones instanceof List) || ((List<?>) telefones).isEmpty()) {
+                response.put("ok", false);
+                response.put("result", "error");
+                response.put("mensagem_imagemdesatelite", "Lista de telefones não fornecida");
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            if (!(endereco instanceof String) || ((String) endereco).isEmpty()) {
+                response.put("ok", false);
+                response.put("result", "error");
+                response.put("mensagem_imagemdesatelite", "Endereço não fornecido");
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            List<String> listaTelefones = new ArrayList<>();
+            for (Object telefone : (List<?>) telefones) {
+                if (telefone != null) {
+                    listaTelefones.add(String.valueOf(telefone));
+                }
+            }
 
+            response = fanOutService.sendToRecipients((String) endereco, listaTelefones);
+
+            if (!response.containsKey("resultados")) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+            }
+            int enviados = (Integer) response.get("enviados");
+            if (enviados == 0) {
+                return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(response);
+            }
+            if (enviados < (Integer) response.get("total")) {
+                return ResponseEntity.status(HttpStatus.MULTI_STATUS).body(response);
+            }
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            logger.error("ERRO geral: " + e.getMessage());
+            e.printStackTrace();
+
+            response.put("ok", false);
+            response.put("result", "error");
+            response.put("mensagem_imagemdesatelite", "Erro interno do servidor: " + e.getMessage());
+
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * Endpoint para enviar o pacote de vistas do imóvel (vários zooms/tipos de mapa)
+     *
+     * POST /analise-imagemdesatelite/pacote
+     *
+     * As vistas de app.pack.views são buscadas em paralelo e enviadas numa
+     * única folha de contato via WATI.
+     *
+     * Body:
+     * {
+     *   "telefone": "5511976169677",
+     *   "endereco": "Av. Dr. Guilherme Dumont Vilares, 2000, São Paulo, SP"
+     * }
+     */
+    @PostMapping("/pacote")
+    public ResponseEntity<Map<String, Object>> enviarPacote(
+            @RequestBody Map<String, String> request) {
+
+        Map<String, Object> response = new HashMap<>();
+
+        try {
+            String telefone = request.get("telefone");
+            String endereco = request.get("endereco");
+
+            logger.info("========================================================");
+            logger.info("NOVA REQUISIÇÃO (PACOTE DO IMÓVEL)");
+            logger.info("Telefone: " + telefone);
+            logger.info("Endereço: " + endereco);
+            logger.info("========================================================");
+            StageTimer.setAddress(endereco);
+
+            if (telefone == null || telefone.isEmpty()) {
+                response.put("ok", false);
+                response.put("result", "error");
+                response.put("mensagem_imagemdesatelite", "Telefone não fornecido");
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            if (endereco == null || endereco.isEmpty()) {
+                response.put("ok", false);
+                response.put("result", "error");
+                response.put("mensagem_imagemdesatelite", "Endereço não fornecido");
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            response = propertyPackService.sendPack(telefone, endereco);
+
+            if (!Boolean.TRUE.equals(response.get("ok"))) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+            }
             return ResponseEntity.ok(response);
 
         } catch (Exception e) {
@@ -142,4 +337,17 @@ public class SatelliteImageController {
         return ResponseEntity.ok(response);
     }
 
+    private static String asString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Contorno GeoJSON recebido como objeto JSON ou como string
+     */
+    private static Boundary parseBoundary(Object value) {
+        JsonElement json = value instanceof String
+                ? JsonParser.parseString((String) value)
+                : new Gson().toJsonTree(value);
+        return Boundary.fromGeoJson(json);
+    }
 }
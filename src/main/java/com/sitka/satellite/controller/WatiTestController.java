@@ -1,13 +1,25 @@
 package com.sitka.satellite.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sitka.satellite.service.WatiBroadcastService;
 import com.sitka.satellite.service.WatiMessageService;
+import com.sitka.satellite.service.WatiWebhookService;
 import com.sitka.satellite.service.GoogleMapsService;
 import java.io.File;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -15,9 +27,22 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class WatiTestController {
 
+    private static final Logger logger = LoggerFactory.getLogger(WatiTestController.class);
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     @Autowired
     private WatiMessageService watiMessageService;
 
+    @Autowired
+    private WatiBroadcastService watiBroadcastService;
+
+    @Autowired
+    private WatiWebhookService watiWebhookService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Autowired
     private GoogleMapsService googleMapsService;
 
@@ -116,6 +141,138 @@ public class WatiTestController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Envio de template para uma lista de destinatários (campanha)
+     * POST /wati/send-template/broadcast
+     *
+     * Body JSON:
+     * {
+     *   "templateName": "welcome",
+     *   "parameters": { "empresa": "Sitka" },
+     *   "recipients": [
+     *     { "phoneNumber": "5511989838304", "parameters": { "name": "João" } },
+     *     { "phoneNumber": "5511976169677", "parameters": { "name": "Maria" } }
+     *   ]
+     * }
+     *
+     * A resposta é NDJSON (application/x-ndjson): uma linha por destinatário
+     * ("tipo": "resultado"), uma de progresso por bloco e o resumo no final.
+     * Se o cliente desconectar, os envios continuam e o resumo fica no log.
+     */
+    @PostMapping("/send-template/broadcast")
+    public ResponseEntity<StreamingResponseBody> broadcastTemplate(@RequestBody Map<String, Object> request) {
+        Object templateName = request.get("templateName");
+        Object recipients = request.get("recipients");
+
+        if (!(templateName instanceof String) || ((String) templateName).isEmpty()) {
+            return badRequestStream("templateName é obrigatório");
+        }
+
+        if (!(recipients instanceof List) || ((List<?>) recipients).isEmpty()) {
+            return badRequestStream("recipients é obrigatório");
+        }
+
+        List<WatiBroadcastService.Recipient> parsed = new ArrayList<>();
+        for (Object item : (List<?>) recipients) {
+            if (item instanceof Map) {
+                Map<?, ?> recipient = (Map<?, ?>) item;
+                Object phone = recipient.get("phoneNumber");
+                parsed.add(new WatiBroadcastService.Recipient(phone != null ? phone.toString() : null,
+                        toStringMap(recipient.get("parameters"))));
+            } else if (item != null) {
+                parsed.add(new WatiBroadcastService.Recipient(item.toString(), null));
+            }
+        }
+        Map<String, String> common = toStringMap(request.get("parameters"));
+
+        StreamingResponseBody body = out -> {
+            NdjsonWriter writer = new NdjsonWriter(out);
+            Map<String, Object> summary = watiBroadcastService.broadcast(
+                    (String) templateName, common, parsed, writer::write);
+            writer.write(summary);
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /**
+     * Webhook de mensagens recebidas do WATI
+     * POST /wati/webhook?token=...
+     *
+     * Responde na hora; a imagem do endereço enviado na mensagem é gerada e
+     * enviada ao remetente em segundo plano. Reentregas do mesmo id são
+     * ignoradas. Com a fila cheia responde 503 para o WATI reenviar depois.
+     */
+    @PostMapping("/webhook")
+    public ResponseEntity<Map<String, Object>> webhook(
+            @RequestParam(required = false) String token,
+            @RequestHeader(value = "X-Webhook-Token", required = false) String headerToken,
+            @RequestBody Map<String, Object> payload) {
+
+        Map<String, Object> response = new HashMap<>();
+        if (!watiWebhookService.isAuthorized(token != null ? token : headerToken)) {
+            response.put("ok", false);
+            response.put("message", "Token inválido");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+
+        WatiWebhookService.Outcome outcome = watiWebhookService.accept(payload);
+        response.put("ok", outcome != WatiWebhookService.Outcome.REJECTED);
+        response.put("status", outcome.name().toLowerCase());
+        if (outcome == WatiWebhookService.Outcome.REJECTED) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    private ResponseEntity<StreamingResponseBody> badRequestStream(String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("ok", false);
+        error.put("message", message);
+        return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                .body(out -> out.write(objectMapper.writeValueAsBytes(error)));
+    }
+
+    private static Map<String, String> toStringMap(Object value) {
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        Map<String, String> result = new HashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                result.put(entry.getKey().toString(), entry.getValue().toString());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Escreve uma linha JSON por evento; progresso e resumo forçam o flush
+     */
+    private final class NdjsonWriter {
+        private final OutputStream out;
+        private boolean disconnected;
+
+        NdjsonWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void write(Map<String, Object> event) {
+            if (disconnected) {
+                return;
+            }
+            try {
+                out.write(objectMapper.writeValueAsBytes(event));
+                out.write('\n');
+                if (!"resultado".equals(event.get("tipo"))) {
+                    out.flush();
+                }
+            } catch (IOException e) {
+                disconnected = true;
+                logger.warn("Cliente do broadcast desconectou; envios continuam: {}", e.getMessage());
+            }
+        }
+    }
+
     /**
      * Endpoint para enviar imagem de satélite
      * POST /wati/send-satellite-image
@@ -179,6 +336,7 @@ public class WatiTestController {
             put("POST /wati/send-message", "Enviar mensagem de texto (query params)");
             put("POST /wati/send-message-json", "Enviar mensagem de texto (JSON body)");
             put("POST /wati/send-template", "Enviar mensagem com template");
+            put("POST /wati/send-template/broadcast", "Enviar template para vários destinatários (NDJSON)");
             put("POST /wati/send-satellite-image", "Enviar imagem de satélite");
             put("GET /wati/info", "Informações dos endpoints");
         }});
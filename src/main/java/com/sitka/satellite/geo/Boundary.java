@@ -0,0 +1,168 @@
+package com.sitka.satellite.geo;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.maps.model.LatLng;
+import com.sitka.satellite.util.Hashing;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Contorno do imóvel lido de GeoJSON (Polygon, MultiPolygon, Feature,
+ * FeatureCollection ou GeometryCollection). Buracos e partes múltiplas são
+ * mantidos como anéis separados; o preenchimento usa a regra par-ímpar.
+ */
+public final class Boundary {
+
+    /** Limite de vértices aceitos (protege o rasterizador de entradas enormes) */
+    private static final int MAX_POINTS = 10_000;
+
+    /** Cada anel: [lng0, lat0, lng1, lat1, ...] */
+    private final List<double[]> rings;
+
+    private Boundary(List<double[]> rings) {
+        this.rings = Collections.unmodifiableList(rings);
+    }
+
+    /**
+     * Lê o contorno; IllegalArgumentException se o GeoJSON não tiver polígonos válidos
+     */
+    public static Boundary fromGeoJson(JsonElement json) {
+        List<double[]> rings = new ArrayList<>();
+        collect(json, rings, new int[1]);
+        if (rings.isEmpty()) {
+            throw new IllegalArgumentException("nenhum polígono encontrado");
+        }
+        return new Boundary(rings);
+    }
+
+    private static void collect(JsonElement json, List<double[]> rings, int[] points) {
+        if (json == null || !json.isJsonObject()) {
+            throw new IllegalArgumentException("objeto GeoJSON esperado");
+        }
+        JsonObject object = json.getAsJsonObject();
+        String type = object.has("type") ? object.get("type").getAsString() : "";
+        switch (type) {
+            case "FeatureCollection":
+                for (JsonElement feature : array(object, "features")) {
+                    collect(feature, rings, points);
+                }
+                break;
+            case "Feature":
+                collect(object.get("geometry"), rings, points);
+                break;
+            case "GeometryCollection":
+                for (JsonElement geometry : array(object, "geometries")) {
+                    collect(geometry, rings, points);
+                }
+                break;
+            case "Polygon":
+                addPolygon(array(object, "coordinates"), rings, points);
+                break;
+            case "MultiPolygon":
+                for (JsonElement polygon : array(object, "coordinates")) {
+                    addPolygon(polygon.getAsJsonArray(), rings, points);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("tipo GeoJSON não suportado: " + type);
+        }
+    }
+
+    private static void addPolygon(JsonArray polygon, List<double[]> rings, int[] points) {
+        for (JsonElement ringJson : polygon) {
+            JsonArray ring = ringJson.getAsJsonArray();
+            if (ring.size() < 3) {
+                throw new IllegalArgumentException("anel com menos de 3 pontos");
+            }
+            points[0] += ring.size();
+            if (points[0] > MAX_POINTS) {
+                throw new IllegalArgumentException("contorno com mais de " + MAX_POINTS + " pontos");
+            }
+            double[] coords = new double[ring.size() * 2];
+            for (int i = 0; i < ring.size(); i++) {
+                JsonArray position = ring.get(i).getAsJsonArray();
+                double lng = position.get(0).getAsDouble();
+                double lat = position.get(1).getAsDouble();
+                if (Math.abs(lng) > 180 || Math.abs(lat) > 85.06) {
+                    throw new IllegalArgumentException("coordenada fora do intervalo: [" + lng + ", " + lat + "]");
+                }
+                coords[i * 2] = lng;
+                coords[i * 2 + 1] = lat;
+            }
+            rings.add(coords);
+        }
+    }
+
+    private static JsonArray array(JsonObject object, String member) {
+        JsonElement value = object.get(member);
+        if (value == null || !value.isJsonArray()) {
+            throw new IllegalArgumentException("campo \"" + member + "\" ausente");
+        }
+        return value.getAsJsonArray();
+    }
+
+    public List<double[]> getRings() {
+        return rings;
+    }
+
+    /**
+     * Centro do retângulo envolvente
+     */
+    public LatLng center() {
+        double minLng = Double.MAX_VALUE, maxLng = -Double.MAX_VALUE;
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        for (double[] ring : rings) {
+            for (int i = 0; i < ring.length; i += 2) {
+                minLng = Math.min(minLng, ring[i]);
+                maxLng = Math.max(maxLng, ring[i]);
+                minLat = Math.min(minLat, ring[i + 1]);
+                maxLat = Math.max(maxLat, ring[i + 1]);
+            }
+        }
+        return new LatLng((minLat + maxLat) / 2, (minLng + maxLng) / 2);
+    }
+
+    /**
+     * Maior zoom (entre minZoom e maxZoom) em que todo o contorno cabe numa
+     * vista width×height centrada em center, com margem de 10%
+     */
+    public int fitZoom(LatLng center, int width, int height, int minZoom, int maxZoom) {
+        for (int zoom = maxZoom; zoom > minZoom; zoom--) {
+            double cx = WebMercator.worldX(center.lng, zoom);
+            double cy = WebMercator.worldY(center.lat, zoom);
+            double maxDx = 0, maxDy = 0;
+            for (double[] ring : rings) {
+                for (int i = 0; i < ring.length; i += 2) {
+                    maxDx = Math.max(maxDx, Math.abs(WebMercator.worldX(ring[i], zoom) - cx));
+                    maxDy = Math.max(maxDy, Math.abs(WebMercator.worldY(ring[i + 1], zoom) - cy));
+                }
+            }
+            if (maxDx <= width * 0.45 && maxDy <= height * 0.45) {
+                return zoom;
+            }
+        }
+        return minZoom;
+    }
+
+    /**
+     * Identificador estável do contorno (SHA-256 das coordenadas, em hex)
+     */
+    public String fingerprint() {
+        MessageDigest digest = Hashing.sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        for (double[] ring : rings) {
+            for (double value : ring) {
+                buffer.clear();
+                digest.update(buffer.putDouble(value).array());
+            }
+            digest.update((byte) ';');
+        }
+        return Hashing.hex(digest.digest());
+    }
+}
@@ -0,0 +1,172 @@
+package com.sitka.satellite.geo;
+
+import com.google.maps.model.LatLng;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Desenha o contorno do imóvel (preenchimento translúcido + borda) direto no
+ * buffer de pixels da imagem, sem Graphics2D: projeção Web-Mercator, scanline
+ * par-ímpar para o preenchimento e carimbo quadrado ao longo das arestas.
+ */
+public final class BoundaryOverlay {
+
+    private static final int FILL_RGB = 0xFFD400;
+    private static final int FILL_ALPHA = 64;
+    private static final int OUTLINE_RGB = 0xFFD400;
+    private static final int OUTLINE_RADIUS = 1;
+
+    /** Passos máximos por aresta (arestas muito fora da vista) */
+    private static final int MAX_EDGE_STEPS = 20_000;
+
+    private BoundaryOverlay() {
+    }
+
+    /**
+     * Desenha o contorno na vista centrada em center no zoom informado.
+     * Imagens TYPE_INT_RGB são alteradas no lugar; as demais são copiadas
+     * para uma TYPE_INT_RGB, que é devolvida.
+     */
+    public static BufferedImage draw(BufferedImage image, Boundary boundary, LatLng center, int zoom) {
+        BufferedImage target = image.getType() == BufferedImage.TYPE_INT_RGB ? image : toIntRgb(image);
+        int width = target.getWidth();
+        int height = target.getHeight();
+        int[] pixels = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+
+        double originX = WebMercator.worldX(center.lng, zoom) - width / 2d;
+        double originY = WebMercator.worldY(center.lat, zoom) - height / 2d;
+
+        List<double[]> rings = boundary.getRings();
+        double[][] xs = new double[rings.size()][];
+        double[][] ys = new double[rings.size()][];
+        int edges = 0;
+        for (int r = 0; r < rings.size(); r++) {
+            double[] ring = rings.get(r);
+            int n = ring.length / 2;
+            xs[r] = new double[n];
+            ys[r] = new double[n];
+            for (int i = 0; i < n; i++) {
+                xs[r][i] = WebMercator.worldX(ring[i * 2], zoom) - originX;
+                ys[r][i] = WebMercator.worldY(ring[i * 2 + 1], zoom) - originY;
+            }
+            edges += n;
+        }
+
+        fill(pixels, width, height, xs, ys, new double[edges]);
+        for (int r = 0; r < xs.length; r++) {
+            outline(pixels, width, height, xs[r], ys[r]);
+        }
+        return target;
+    }
+
+    private static BufferedImage toIntRgb(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage copy = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] data = ((DataBufferInt) copy.getRaster().getDataBuffer()).getData();
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)
+                && image.getRaster().getDataBuffer() instanceof DataBufferByte
+                && image.getRaster().getParent() == null) {
+            // Caso comum (PNG/JPEG decodificados): cópia direta, sem passar pelo ColorModel
+            byte[] bytes = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            int stride = type == BufferedImage.TYPE_3BYTE_BGR ? 3 : 4;
+            int skip = stride - 3;
+            for (int i = 0, b = 0; i < data.length; i++, b += stride) {
+                data[i] = ((bytes[b + skip + 2] & 0xFF) << 16) | ((bytes[b + skip + 1] & 0xFF) << 8)
+                        | (bytes[b + skip] & 0xFF);
+            }
+        } else {
+            image.getRGB(0, 0, width, height, data, 0, width);
+        }
+        return copy;
+    }
+
+    /**
+     * Preenchimento par-ímpar: em cada linha, ordena os cruzamentos com as
+     * arestas e mistura a cor nos intervalos alternados
+     */
+    private static void fill(int[] pixels, int width, int height, double[][] xs, double[][] ys, double[] crossings) {
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (double[] ring : ys) {
+            for (double y : ring) {
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+        }
+        int firstRow = Math.max(0, (int) Math.floor(minY));
+        int lastRow = Math.min(height - 1, (int) Math.ceil(maxY));
+
+        int fillR = ((FILL_RGB >> 16) & 0xFF) * FILL_ALPHA;
+        int fillG = ((FILL_RGB >> 8) & 0xFF) * FILL_ALPHA;
+        int fillB = (FILL_RGB & 0xFF) * FILL_ALPHA;
+        int keep = 255 - FILL_ALPHA;
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            double scanY = row + 0.5;
+            int count = 0;
+            for (int r = 0; r < xs.length; r++) {
+                double[] rx = xs[r];
+                double[] ry = ys[r];
+                int n = rx.length;
+                for (int i = 0, j = n - 1; i < n; j = i++) {
+                    if ((ry[i] <= scanY) != (ry[j] <= scanY)) {
+                        crossings[count++] = rx[i] + (scanY - ry[i]) * (rx[j] - rx[i]) / (ry[j] - ry[i]);
+                    }
+                }
+            }
+            Arrays.sort(crossings, 0, count);
+
+            int offset = row * width;
+            for (int k = 0; k + 1 < count; k += 2) {
+                int from = Math.max(0, (int) Math.ceil(crossings[k] - 0.5));
+                int to = Math.min(width - 1, (int) Math.floor(crossings[k + 1] - 0.5));
+                for (int x = from; x <= to; x++) {
+                    int p = pixels[offset + x];
+                    int red = (((p >> 16) & 0xFF) * keep + fillR) / 255;
+                    int green = (((p >> 8) & 0xFF) * keep + fillG) / 255;
+                    int blue = ((p & 0xFF) * keep + fillB) / 255;
+                    pixels[offset + x] = (red << 16) | (green << 8) | blue;
+                }
+            }
+        }
+    }
+
+    /**
+     * Borda: percorre cada aresta pixel a pixel carimbando um quadrado
+     */
+    private static void outline(int[] pixels, int width, int height, double[] xs, double[] ys) {
+        int n = xs.length;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            double dx = xs[i] - xs[j];
+            double dy = ys[i] - ys[j];
+            int steps = (int) Math.min(MAX_EDGE_STEPS, Math.ceil(Math.max(Math.abs(dx), Math.abs(dy))));
+            for (int s = 0; s <= steps; s++) {
+                double t = steps == 0 ? 0 : (double) s / steps;
+                stamp(pixels, width, height, (int) Math.floor(xs[j] + dx * t), (int) Math.floor(ys[j] + dy * t));
+            }
+        }
+    }
+
+    private static void stamp(int[] pixels, int width, int height, int cx, int cy) {
+        if (cx < -OUTLINE_RADIUS || cy < -OUTLINE_RADIUS
+                || cx > width + OUTLINE_RADIUS || cy > height + OUTLINE_RADIUS) {
+            return;
+        }
+        int fromY = Math.max(0, cy - OUTLINE_RADIUS);
+        int toY = Math.min(height - 1, cy + OUTLINE_RADIUS);
+        int fromX = Math.max(0, cx - OUTLINE_RADIUS);
+        int toX = Math.min(width - 1, cx + OUTLINE_RADIUS);
+        for (int y = fromY; y <= toY; y++) {
+            int offset = y * width;
+            for (int x = fromX; x <= toX; x++) {
+                pixels[offset + x] = OUTLINE_RGB;
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.sitka.satellite.geo;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Desenha localmente o pino vermelho equivalente ao "markers=color:red" do Static Maps
+ */
+public final class MapMarker {
+
+    private static final Color FILL = new Color(0xEA4335);
+    private static final Color BORDER = new Color(0xA52714);
+    private static final Color DOT = new Color(0x7A1C10);
+
+    /** Maior distância, em pixels, entre a ponta do pino e qualquer parte do desenho */
+    public static final int EXTENT = 42;
+
+    private MapMarker() {
+    }
+
+    /**
+     * Desenha o pino com a ponta em (x, y)
+     */
+    public static void draw(BufferedImage image, double x, double y) {
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            double radius = 10;
+            double headY = y - 26;
+
+            Path2D pin = new Path2D.Double();
+            pin.moveTo(x, y);
+            pin.curveTo(x - 3, y - 9, x - radius, headY + 7, x - radius, headY);
+            pin.curveTo(x - radius, headY - 14, x + radius, headY - 14, x + radius, headY);
+            pin.curveTo(x + radius, headY + 7, x + 3, y - 9, x, y);
+            pin.closePath();
+
+            g.setColor(FILL);
+            g.fill(pin);
+            g.setColor(BORDER);
+            g.setStroke(new BasicStroke(1.2f));
+            g.draw(pin);
+
+            g.setColor(DOT);
+            g.fill(new Ellipse2D.Double(x - 3.5, headY - 3.5, 7, 7));
+        } finally {
+            g.dispose();
+        }
+    }
+}
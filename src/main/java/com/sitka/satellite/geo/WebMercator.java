@@ -0,0 +1,60 @@
+package com.sitka.satellite.geo;
+
+/**
+ * Projeção Web-Mercator usada pelo Google Maps (tiles de 256 px).
+ *
+ * Coordenadas "de mundo" são pixels absolutos no nível de zoom informado:
+ * x cresce para leste a partir de -180°, y cresce para sul a partir de ~85°N.
+ */
+public final class WebMercator {
+
+    public static final int TILE_SIZE = 256;
+
+    private static final double EARTH_CIRCUMFERENCE_METERS = 40_075_016.686;
+
+    private WebMercator() {
+    }
+
+    public static double worldSize(int zoom) {
+        return TILE_SIZE * (double) (1L << zoom);
+    }
+
+    public static double worldX(double lng, int zoom) {
+        return (lng + 180d) / 360d * worldSize(zoom);
+    }
+
+    public static double worldY(double lat, int zoom) {
+        double sin = Math.sin(Math.toRadians(lat));
+        // Limita perto dos polos, como o próprio Maps faz
+        sin = Math.min(Math.max(sin, -0.9999), 0.9999);
+        return (0.5d - Math.log((1d + sin) / (1d - sin)) / (4d * Math.PI)) * worldSize(zoom);
+    }
+
+    public static double lng(double worldX, int zoom) {
+        return worldX / worldSize(zoom) * 360d - 180d;
+    }
+
+    public static double lat(double worldY, int zoom) {
+        double n = Math.PI - 2d * Math.PI * worldY / worldSize(zoom);
+        return Math.toDegrees(Math.atan(Math.sinh(n)));
+    }
+
+    /**
+     * Resolução no solo (metros por pixel) na latitude e zoom informados
+     */
+    public static double metersPerPixel(double lat, int zoom) {
+        return EARTH_CIRCUMFERENCE_METERS * Math.cos(Math.toRadians(lat)) / worldSize(zoom);
+    }
+
+    /**
+     * Distância aproximada em metros entre dois pontos (haversine)
+     */
+    public static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * 6_371_008.8 * Math.asin(Math.min(1d, Math.sqrt(a)));
+    }
+}
@@ -0,0 +1,116 @@
+package com.sitka.satellite.imagery;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decide quando disparar um pedido "de reserva" (hedge): o atraso é o percentil
+ * configurado das latências recentes e a taxa de hedges é limitada por um
+ * balde de fichas (cada pedido rende maxRate fichas, cada hedge gasta uma).
+ *
+ * Tentativas perdedoras ou que estouraram o tempo entram na janela com o tempo
+ * que já tinham esperado (amostra censurada: a latência real é no mínimo
+ * essa); sem isso só as respostas rápidas seriam contadas e o percentil cairia.
+ * O percentil é recalculado a cada RECOMPUTE_EVERY amostras, não a cada pedido.
+ */
+class HedgePolicy {
+
+    /** Amostras mínimas antes de confiar no percentil */
+    private static final int MIN_SAMPLES = 20;
+
+    /** Máximo de fichas acumuladas (rajada de hedges permitida) */
+    private static final double MAX_TOKENS = 5;
+
+    /** Novas amostras entre dois cálculos do percentil */
+    static final int RECOMPUTE_EVERY = 16;
+
+    private final double percentile;
+    private final long initialDelayMs;
+    private final long minDelayMs;
+    private final double maxRate;
+
+    private final long[] window;
+    private int next;
+    private int count;
+    private double tokens;
+    private long cachedDelayMs = -1;
+    private int samplesSinceSort;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    HedgePolicy(double percentile, long initialDelayMs, long minDelayMs, double maxRate, int windowSize) {
+        this.percentile = Math.min(1, Math.max(0, percentile));
+        this.initialDelayMs = initialDelayMs;
+        this.minDelayMs = minDelayMs;
+        this.maxRate = Math.max(0, maxRate);
+        this.window = new long[Math.max(MIN_SAMPLES, windowSize)];
+    }
+
+    /**
+     * Registra um novo pedido (gera fichas para hedges futuros)
+     */
+    synchronized void onRequest() {
+        requests.incrementAndGet();
+        tokens = Math.min(MAX_TOKENS, tokens + maxRate);
+    }
+
+    /**
+     * Latência de uma tentativa concluída com sucesso, ou o tempo já esperado
+     * por uma tentativa perdedora ou que estourou o tempo (limite inferior)
+     */
+    synchronized void record(long latencyMs) {
+        window[next] = latencyMs;
+        next = (next + 1) % window.length;
+        count = Math.min(count + 1, window.length);
+        samplesSinceSort++;
+    }
+
+    /**
+     * Quanto esperar pela primeira tentativa antes de disparar o hedge
+     */
+    synchronized long delayMs() {
+        if (count < MIN_SAMPLES) {
+            return initialDelayMs;
+        }
+        if (cachedDelayMs < 0 || samplesSinceSort >= RECOMPUTE_EVERY) {
+            long[] sorted = Arrays.copyOf(window, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * count) - 1;
+            cachedDelayMs = Math.max(minDelayMs, sorted[Math.max(0, Math.min(count - 1, index))]);
+            samplesSinceSort = 0;
+        }
+        return cachedDelayMs;
+    }
+
+    /**
+     * Consome uma ficha se a taxa de hedges permitir
+     */
+    synchronized boolean tryHedge() {
+        if (tokens >= 1) {
+            tokens -= 1;
+            hedges.incrementAndGet();
+            return true;
+        }
+        suppressed.incrementAndGet();
+        return false;
+    }
+
+    void onHedgeWin() {
+        hedgeWins.incrementAndGet();
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requests.get());
+        stats.put("hedges", hedges.get());
+        stats.put("hedge_wins", hedgeWins.get());
+        stats.put("hedges_suppressed", suppressed.get());
+        stats.put("delay_ms", delayMs());
+        return stats;
+    }
+}
@@ -0,0 +1,33 @@
+package com.sitka.satellite.imagery;
+
+import java.io.IOException;
+
+/**
+ * Fonte de imagens de mapa (Static Maps, pacote local de tiles, ...).
+ *
+ * Implementações são beans Spring; a ordem de consulta é definida em
+ * app.imagery.providers pelo nome de cada uma.
+ */
+public interface ImageryProvider {
+
+    /**
+     * Nome usado em app.imagery.providers
+     */
+    String getName();
+
+    /**
+     * Busca a vista pedida. Retorna null quando este provedor não cobre o
+     * pedido (sem tiles para a área, tipo de mapa diferente etc.), para que o
+     * próximo provedor seja consultado; lança IOException em falhas reais.
+     */
+    ImageryResult fetch(ImageryRequest request) throws IOException;
+
+    /**
+     * Se este provedor só atende o pedido com o centro já geocodificado. O
+     * ImageryService geocodifica o endereço uma única vez e passa o mesmo
+     * centro aos provedores seguintes.
+     */
+    default boolean requiresCenter(ImageryRequest request) {
+        return false;
+    }
+}
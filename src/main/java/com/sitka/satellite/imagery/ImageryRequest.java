@@ -0,0 +1,72 @@
+package com.sitka.satellite.imagery;
+
+import com.google.maps.model.LatLng;
+
+/**
+ * Vista de mapa pedida a um ImageryProvider.
+ *
+ * O centro é o endereço (texto) ou uma coordenada já geocodificada; quando
+ * ambos existem, a coordenada tem prioridade.
+ */
+public final class ImageryRequest {
+
+    private final String address;
+    private final LatLng center;
+    private final int zoom;
+    private final int width;
+    private final int height;
+    private final String mapType;
+    private final boolean marker;
+
+    public ImageryRequest(String address, LatLng center, int zoom, int width, int height,
+                          String mapType, boolean marker) {
+        this.address = address;
+        this.center = center;
+        this.zoom = zoom;
+        this.width = width;
+        this.height = height;
+        this.mapType = mapType;
+        this.marker = marker;
+    }
+
+    /**
+     * Mesma vista centrada na coordenada informada
+     */
+    public ImageryRequest withCenter(LatLng center) {
+        return new ImageryRequest(address, center, zoom, width, height, mapType, marker);
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public LatLng getCenter() {
+        return center;
+    }
+
+    public int getZoom() {
+        return zoom;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public String getMapType() {
+        return mapType;
+    }
+
+    public boolean hasMarker() {
+        return marker;
+    }
+
+    @Override
+    public String toString() {
+        return (center != null ? center.toString() : address)
+                + " z" + zoom + " " + width + "x" + height + " " + mapType + (marker ? " +marcador" : "");
+    }
+}
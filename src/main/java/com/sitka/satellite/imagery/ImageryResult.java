@@ -0,0 +1,29 @@
+package com.sitka.satellite.imagery;
+
+/**
+ * Imagem codificada (PNG/JPEG) devolvida por um ImageryProvider
+ */
+public final class ImageryResult {
+
+    private final byte[] bytes;
+    private final String contentType;
+    private final String provider;
+
+    public ImageryResult(byte[] bytes, String contentType, String provider) {
+        this.bytes = bytes;
+        this.contentType = contentType;
+        this.provider = provider;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+}
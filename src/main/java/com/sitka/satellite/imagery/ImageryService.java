@@ -0,0 +1,192 @@
+package com.sitka.satellite.imagery;
+
+import com.google.maps.model.LatLng;
+import com.sitka.satellite.service.GeocodingService;
+import com.sitka.satellite.timing.StageTimer;
+import com.sitka.satellite.util.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ponto único de busca de imagens: consulta os provedores na ordem de
+ * app.imagery.providers e devolve o primeiro resultado. Se algum provedor
+ * precisar do centro (pacote de tiles), o endereço é geocodificado uma vez e o
+ * pedido segue com esse centro (withCenter) para os provedores seguintes.
+ *
+ * Respostas placeholder (a imagem "sem imagens aqui" ou de erro do provedor)
+ * contam como não atendidas, antes de armazenamento ou envio. São reconhecidas
+ * pelo SHA-256, se estiver em app.imagery.placeholder-fingerprints, ou, só em
+ * vistas satellite/hybrid, pelo conteúdo (PlaceholderDetector): um mapa
+ * roadmap de área rural também é quase todo cinza-claro uniforme. O resultado negativo fica guardado por vista
+ * e provedor durante app.imagery.placeholder-cache.ttl-minutes, para que o
+ * mesmo endereço não volte a custar uma chamada paga a cada pedido.
+ */
+@Service
+public class ImageryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageryService.class);
+
+    private final GeocodingService geocodingService;
+    private final List<ImageryProvider> providers = new ArrayList<>();
+    private final Set<String> placeholderFingerprints = new HashSet<>();
+
+    private final boolean detectPlaceholders;
+    private final long placeholderTtlMs;
+
+    /** "provedor|vista" → instante em que o resultado negativo expira */
+    private final Map<String, Long> knownPlaceholders;
+
+    private final AtomicLong placeholders = new AtomicLong();
+    private final AtomicLong placeholderCacheHits = new AtomicLong();
+
+    public ImageryService(List<ImageryProvider> available,
+                          GeocodingService geocodingService,
+                          @Value("${app.imagery.providers:tile-pack,static-maps}") List<String> order,
+                          @Value("${app.imagery.placeholder-fingerprints:}") List<String> fingerprints,
+                          @Value("${app.imagery.placeholder-detection:true}") boolean detectPlaceholders,
+                          @Value("${app.imagery.placeholder-cache.ttl-minutes:360}") long placeholderTtlMinutes,
+                          @Value("${app.imagery.placeholder-cache.max-entries:10000}") int placeholderCacheSize) {
+        this.geocodingService = geocodingService;
+        this.detectPlaceholders = detectPlaceholders;
+        this.placeholderTtlMs = TimeUnit.MINUTES.toMillis(Math.max(0, placeholderTtlMinutes));
+        int maxKnown = Math.max(1, placeholderCacheSize);
+        this.knownPlaceholders = Collections.synchronizedMap(new LinkedHashMap<String, Long>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxKnown;
+            }
+        });
+        for (String fingerprint : fingerprints) {
+            if (!fingerprint.trim().isEmpty()) {
+                placeholderFingerprints.add(fingerprint.trim().toLowerCase());
+            }
+        }
+        for (String name : order) {
+            for (ImageryProvider provider : available) {
+                if (provider.getName().equals(name.trim())) {
+                    providers.add(provider);
+                }
+            }
+        }
+        if (providers.isEmpty()) {
+            throw new IllegalStateException("Nenhum provedor de imagens válido em app.imagery.providers: " + order);
+        }
+    }
+
+    /**
+     * Busca a vista no primeiro provedor que a cobrir. Retorna null se nenhum
+     * cobrir; se algum falhou e nenhum atendeu, relança a última falha.
+     */
+    public ImageryResult fetch(ImageryRequest request) throws IOException {
+        IOException lastError = null;
+        boolean geocoded = false;
+        try (StageTimer.Stage stage = StageTimer.start("imagery").status("none")) {
+            for (ImageryProvider provider : providers) {
+                if (request.getCenter() == null && provider.requiresCenter(request)) {
+                    if (geocoded) {
+                        continue;
+                    }
+                    geocoded = true;
+                    LatLng center = geocode(request.getAddress());
+                    if (center == null) {
+                        continue;
+                    }
+                    request = request.withCenter(center);
+                }
+                String placeholderKey = provider.getName() + "|" + request;
+                if (isKnownPlaceholder(placeholderKey)) {
+                    placeholderCacheHits.incrementAndGet();
+                    stage.status("placeholder");
+                    continue;
+                }
+                try {
+                    ImageryResult result = provider.fetch(request);
+                    if (result != null && isPlaceholder(result.getBytes(), request.getMapType())) {
+                        placeholders.incrementAndGet();
+                        if (placeholderTtlMs > 0) {
+                            knownPlaceholders.put(placeholderKey, System.currentTimeMillis() + placeholderTtlMs);
+                        }
+                        logger.warn("Provedor {} devolveu imagem placeholder para {}", provider.getName(), request);
+                        stage.status("placeholder");
+                        continue;
+                    }
+                    if (result != null) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Imagem {} servida por {} (sha256 {})", request, provider.getName(),
+                                    Hashing.sha256Hex(result.getBytes()));
+                        }
+                        stage.bytes(result.getBytes().length).status(provider.getName());
+                        return result;
+                    }
+                } catch (IOException e) {
+                    logger.warn("Provedor {} falhou para {}: {}", provider.getName(), request, e.getMessage());
+                    stage.status("error");
+                    lastError = e;
+                }
+            }
+        }
+        if (lastError != null) {
+            throw lastError;
+        }
+        return null;
+    }
+
+    private LatLng geocode(String address) {
+        try {
+            return geocodingService.getLatLng(address);
+        } catch (Exception e) {
+            logger.warn("Erro ao geocodificar {}: {}", address, e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean isKnownPlaceholder(String placeholderKey) {
+        Long expiresAt = knownPlaceholders.get(placeholderKey);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt < System.currentTimeMillis()) {
+            knownPlaceholders.remove(placeholderKey);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isPlaceholder(byte[] bytes, String mapType) {
+        if (!placeholderFingerprints.isEmpty() && placeholderFingerprints.contains(Hashing.sha256Hex(bytes))) {
+            return true;
+        }
+        if (!detectPlaceholders || !("satellite".equals(mapType) || "hybrid".equals(mapType))) {
+            return false;
+        }
+        try {
+            return PlaceholderDetector.looksLikePlaceholder(bytes);
+        } catch (IOException e) {
+            logger.debug("Não foi possível inspecionar a imagem: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("placeholder_fingerprints", placeholderFingerprints.size());
+        stats.put("placeholder_detection", detectPlaceholders);
+        stats.put("placeholders", placeholders.get());
+        stats.put("placeholder_cache_entries", knownPlaceholders.size());
+        stats.put("placeholder_cache_hits", placeholderCacheHits.get());
+        return stats;
+    }
+}
@@ -0,0 +1,97 @@
+package com.sitka.satellite.imagery;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Reconhece pelo conteúdo a imagem "sem imagens aqui" dos provedores: fundo
+ * cinza-claro praticamente uniforme, com no máximo um texto pequeno no meio.
+ * Não depende do tamanho pedido nem do encoder, ao contrário do SHA-256.
+ *
+ * A imagem é lida com subamostragem (cerca de 64×64 pontos), então o custo
+ * fica bem abaixo de uma decodificação completa.
+ */
+final class PlaceholderDetector {
+
+    private static final int SAMPLES_PER_SIDE = 64;
+
+    /** Diferença máxima entre canais para o ponto contar como cinza */
+    private static final int MAX_CHROMA = 12;
+
+    /** Distância máxima (em luminância) do tom de fundo */
+    private static final int MAX_LUMA_DELTA = 8;
+
+    private static final int MIN_BACKGROUND_LUMA = 170;
+    private static final int MAX_BACKGROUND_LUMA = 245;
+
+    /** Fração mínima de pontos no tom de fundo */
+    private static final double MIN_BACKGROUND_FRACTION = 0.92;
+
+    private PlaceholderDetector() {
+    }
+
+    static boolean looksLikePlaceholder(byte[] bytes) throws IOException {
+        BufferedImage image = readSubsampled(bytes);
+        if (image == null) {
+            return false;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+
+        int[] histogram = new int[256];
+        int gray = 0;
+        for (int p : pixels) {
+            int r = (p >> 16) & 0xFF;
+            int g = (p >> 8) & 0xFF;
+            int b = p & 0xFF;
+            if (Math.max(r, Math.max(g, b)) - Math.min(r, Math.min(g, b)) <= MAX_CHROMA) {
+                histogram[(r * 299 + g * 587 + b * 114) / 1000]++;
+                gray++;
+            }
+        }
+        if (gray < pixels.length * MIN_BACKGROUND_FRACTION) {
+            return false;
+        }
+
+        int mode = 0;
+        for (int luma = 1; luma < 256; luma++) {
+            if (histogram[luma] > histogram[mode]) {
+                mode = luma;
+            }
+        }
+        if (mode < MIN_BACKGROUND_LUMA || mode > MAX_BACKGROUND_LUMA) {
+            return false;
+        }
+        int background = 0;
+        for (int luma = mode - MAX_LUMA_DELTA; luma <= mode + MAX_LUMA_DELTA; luma++) {
+            background += histogram[luma];
+        }
+        return background >= pixels.length * MIN_BACKGROUND_FRACTION;
+    }
+
+    private static BufferedImage readSubsampled(byte[] bytes) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int step = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / SAMPLES_PER_SIDE);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
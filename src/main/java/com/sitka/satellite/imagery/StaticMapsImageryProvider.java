@@ -0,0 +1,320 @@
+package com.sitka.satellite.imagery;
+
+import com.sitka.satellite.service.BufferPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Imagens do Google Maps Static API.
+ *
+ * Com app.imagery.static-maps.hedge.enabled, se a primeira tentativa não
+ * responder dentro do percentil configurado das latências recentes, um segundo
+ * pedido idêntico é disparado; a primeira resposta vence e a outra conexão é
+ * fechada. A fração de pedidos com hedge é limitada por hedge.max-rate.
+ *
+ * As tentativas rodam num pool limitado (max-concurrent-downloads); com o pool
+ * cheio, o pedido é feito na própria thread, sem hedge.
+ */
+@Component
+public class StaticMapsImageryProvider implements ImageryProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticMapsImageryProvider.class);
+
+    private static final String BASE_URL = "https://maps.googleapis.com/maps/api/staticmap?";
+
+    @Autowired
+    private BufferPool bufferPool;
+
+    @Value("${app.google.api-key:}")
+    private String googleApiKey;
+
+    @Value("${app.imagery.static-maps.connect-timeout-ms:5000}")
+    private int connectTimeoutMs;
+
+    @Value("${app.imagery.static-maps.read-timeout-ms:15000}")
+    private int readTimeoutMs;
+
+    private final boolean hedgeEnabled;
+
+    private final HedgePolicy hedgePolicy;
+
+    private final ExecutorService executor;
+
+    public StaticMapsImageryProvider(
+            @Value("${app.imagery.static-maps.hedge.enabled:false}") boolean hedgeEnabled,
+            @Value("${app.imagery.static-maps.hedge.percentile:0.95}") double percentile,
+            @Value("${app.imagery.static-maps.hedge.initial-delay-ms:1500}") long initialDelayMs,
+            @Value("${app.imagery.static-maps.hedge.min-delay-ms:100}") long minDelayMs,
+            @Value("${app.imagery.static-maps.hedge.max-rate:0.05}") double maxRate,
+            @Value("${app.imagery.static-maps.hedge.window:200}") int window,
+            @Value("${app.imagery.static-maps.max-concurrent-downloads:32}") int maxConcurrentDownloads) {
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgePolicy = new HedgePolicy(percentile, initialDelayMs, minDelayMs, maxRate, window);
+        AtomicInteger counter = new AtomicInteger();
+        int threads = Math.max(2, maxConcurrentDownloads);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "static-maps-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    @Override
+    public String getName() {
+        return "static-maps";
+    }
+
+    @Override
+    public ImageryResult fetch(ImageryRequest request) throws IOException {
+        if (googleApiKey == null || googleApiKey.isEmpty()) {
+            logger.error("ERRO: GOOGLE_API_KEY não configurada!");
+            return null;
+        }
+
+        String mapUrl = buildUrl(request);
+        logger.info("Baixando imagem de: {}", mapUrl.replace(googleApiKey, "***"));
+
+        return hedgeEnabled ? fetchHedged(mapUrl) : download(mapUrl, null);
+    }
+
+    /**
+     * Primeira tentativa; após o atraso do HedgePolicy, uma segunda em paralelo.
+     * Vence a primeira resposta bem-sucedida; falha só se todas falharem.
+     */
+    private ImageryResult fetchHedged(String mapUrl) throws IOException {
+        hedgePolicy.onRequest();
+        long delayMs = hedgePolicy.delayMs();
+        Race race = new Race();
+        Attempt primary = start(mapUrl, race, false, delayMs);
+        if (primary == null) {
+            // Pool cheio: tentativa única na thread do pedido
+            return download(mapUrl, null);
+        }
+        Attempt hedge = null;
+        try {
+            try {
+                return race.winner.get(delayMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Reserva a vaga do hedge só se a primeira ainda estiver rodando;
+                // se ela falhou nesse meio-tempo, o erro já está em winner
+                if (race.running.getAndUpdate(n -> n > 0 ? n + 1 : n) > 0) {
+                    if (hedgePolicy.tryHedge()) {
+                        logger.info("Static Maps sem resposta em {} ms, disparando pedido de reserva", delayMs);
+                        hedge = start(mapUrl, race, true, 0);
+                    }
+                    if (hedge == null) {
+                        race.attemptFailed(null);
+                    }
+                }
+            }
+            return race.winner.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Download interrompido", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            // Fecha a conexão perdedora (ou ambas, em caso de erro)
+            primary.finish();
+            if (hedge != null) {
+                hedge.finish();
+            }
+        }
+    }
+
+    /**
+     * Dispara uma tentativa no pool; null se o pool estiver cheio.
+     * censorFloorMs é o mínimo registrado se ela perder ou estourar o tempo.
+     */
+    private Attempt start(String mapUrl, Race race, boolean isHedge, long censorFloorMs) {
+        Attempt attempt = new Attempt(isHedge, censorFloorMs);
+        try {
+            executor.execute(() -> {
+                try {
+                    ImageryResult result = download(mapUrl, attempt);
+                    attempt.record(attempt.elapsedMs());
+                    if (race.winner.complete(result) && isHedge) {
+                        hedgePolicy.onHedgeWin();
+                        logger.info("Pedido de reserva do Static Maps venceu ({} ms)", attempt.elapsedMs());
+                    }
+                } catch (Exception e) {
+                    if (e instanceof SocketTimeoutException) {
+                        attempt.record(Math.max(attempt.elapsedMs(), censorFloorMs));
+                    }
+                    if (!attempt.cancelled && race.running.get() > 1) {
+                        logger.warn("Tentativa do Static Maps falhou: {}", e.getMessage());
+                    }
+                    race.attemptFailed(e);
+                } finally {
+                    attempt.done = true;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+        return attempt;
+    }
+
+    private ImageryResult download(String mapUrl, Attempt attempt) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(mapUrl).openConnection();
+        connection.setConnectTimeout(connectTimeoutMs);
+        connection.setReadTimeout(readTimeoutMs);
+        if (attempt != null) {
+            attempt.connection = connection;
+            if (attempt.cancelled) {
+                connection.disconnect();
+                throw new IOException("Tentativa cancelada");
+            }
+        }
+        try {
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Static Maps retornou status " + status);
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return new ImageryResult(bufferPool.readAll(in), connection.getContentType(), getName());
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * URL do Static Maps para a vista pedida
+     */
+    String buildUrl(ImageryRequest request) {
+        String center = request.getCenter() != null
+                ? request.getCenter().lat + "," + request.getCenter().lng
+                : URLEncoder.encode(request.getAddress(), StandardCharsets.UTF_8);
+
+        StringBuilder url = new StringBuilder(BASE_URL)
+                .append("center=").append(center)
+                .append("&zoom=").append(request.getZoom())
+                .append("&size=").append(request.getWidth()).append('x').append(request.getHeight())
+                .append("&maptype=").append(request.getMapType());
+        if (request.hasMarker()) {
+            url.append("&markers=color:red%7C").append(center);
+        }
+        url.append("&key=").append(googleApiKey);
+        return url.toString();
+    }
+
+    /**
+     * Métricas de hedging (pedidos, hedges, vitórias do hedge, atraso atual)
+     */
+    public Map<String, Object> hedgeSnapshot() {
+        Map<String, Object> stats = hedgePolicy.snapshot();
+        stats.put("enabled", hedgeEnabled);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Resultado compartilhado pelas tentativas de um pedido
+     */
+    private static final class Race {
+        final CompletableFuture<ImageryResult> winner = new CompletableFuture<>();
+        final AtomicInteger running = new AtomicInteger(1);
+        final AtomicReference<Exception> lastError = new AtomicReference<>();
+
+        /**
+         * Uma tentativa terminou sem resultado (ou a vaga reservada para o
+         * hedge não foi usada, com error null); a última a sair propaga o erro
+         */
+        void attemptFailed(Exception error) {
+            if (error != null) {
+                lastError.set(error);
+            }
+            if (running.decrementAndGet() == 0) {
+                Exception last = lastError.get();
+                winner.completeExceptionally(last != null ? last : new IOException("Nenhuma tentativa concluída"));
+            }
+        }
+    }
+
+    /**
+     * Tentativa em andamento; cancelar fecha a conexão e aborta a leitura
+     */
+    private final class Attempt {
+        final long startedAt = System.currentTimeMillis();
+        final boolean isHedge;
+        final long censorFloorMs;
+        final AtomicBoolean recorded = new AtomicBoolean();
+        volatile HttpURLConnection connection;
+        volatile boolean cancelled;
+        volatile boolean done;
+
+        Attempt(boolean isHedge, long censorFloorMs) {
+            this.isHedge = isHedge;
+            this.censorFloorMs = censorFloorMs;
+        }
+
+        long elapsedMs() {
+            return System.currentTimeMillis() - startedAt;
+        }
+
+        /**
+         * Registra a latência no HedgePolicy uma única vez por tentativa
+         */
+        void record(long latencyMs) {
+            if (recorded.compareAndSet(false, true)) {
+                hedgePolicy.record(latencyMs);
+            }
+        }
+
+        /**
+         * Fim do pedido: se ainda rodava (perdeu a corrida), conta o tempo já
+         * esperado como amostra censurada e fecha a conexão. Um hedge perdedor
+         * não registra nada: começou há pouco e só diria que o pedido leva
+         * "pelo menos alguns ms", puxando o p95 (e o atraso do hedge) para baixo.
+         */
+        void finish() {
+            if (!done && !isHedge) {
+                record(Math.max(elapsedMs(), censorFloorMs));
+            }
+            cancel();
+        }
+
+        void cancel() {
+            cancelled = true;
+            HttpURLConnection current = connection;
+            if (current != null) {
+                current.disconnect();
+            }
+        }
+    }
+}
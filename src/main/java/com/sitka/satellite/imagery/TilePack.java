@@ -0,0 +1,169 @@
+package com.sitka.satellite.imagery;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Leitor do pacote de tiles: um único arquivo indexado, mapeado em memória.
+ *
+ * Formato (big-endian), no estilo PMTiles/MBTiles mas mínimo:
+ *
+ *   magic    8 bytes  "SKTPACK1"
+ *   count    int      número de tiles
+ *   índice   count × (long tileId, long offset, int length), ordenado por tileId
+ *   dados    tiles PNG/JPEG de 256×256 (esquema XYZ), concatenados
+ *
+ * tileId = zoom << 56 | x << 28 | y. A busca é binária direto sobre o índice
+ * mapeado, sem estruturas no heap; o arquivo é mapeado em segmentos de 1 GB.
+ * O índice é conferido ao abrir (ordem dos ids e cada tile dentro da área de
+ * dados); pacotes truncados ou corrompidos são recusados com IOException.
+ *
+ * Pacotes são gerados com TilePackWriter.
+ */
+public final class TilePack implements Closeable {
+
+    static final byte[] MAGIC = "SKTPACK1".getBytes(StandardCharsets.US_ASCII);
+    static final int HEADER_SIZE = MAGIC.length + 4;
+    static final int INDEX_ENTRY_SIZE = 8 + 8 + 4;
+
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final int count;
+
+    public TilePack(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            int segmentCount = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            this.segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long start = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+            }
+
+            if (size < HEADER_SIZE) {
+                throw new IOException("Arquivo não é um pacote de tiles: " + path);
+            }
+            byte[] magic = read(0, MAGIC.length);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new IOException("Arquivo não é um pacote de tiles: " + path);
+                }
+            }
+            this.count = getInt(MAGIC.length);
+            validateIndex(path, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Confere que o índice cabe no arquivo, que os ids estão em ordem
+     * crescente e que cada tile fica inteiro na área de dados
+     */
+    private void validateIndex(Path path, long size) throws IOException {
+        long dataStart = HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE;
+        if (count < 0 || dataStart > size) {
+            throw new IOException("Índice do pacote de tiles passa do fim do arquivo (" + count + " tiles): " + path);
+        }
+        long previousId = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            long entry = HEADER_SIZE + (long) i * INDEX_ENTRY_SIZE;
+            long id = getLong(entry);
+            long offset = getLong(entry + 8);
+            int length = getInt(entry + 16);
+            if (i > 0 && id <= previousId) {
+                throw new IOException("Índice do pacote de tiles fora de ordem na entrada " + i + ": " + path);
+            }
+            if (length <= 0 || offset < dataStart || offset > size - length) {
+                throw new IOException("Tile " + i + " fora da área de dados (offset " + offset
+                        + ", " + length + " bytes): " + path);
+            }
+            previousId = id;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    static long tileId(int zoom, int x, int y) {
+        return ((long) zoom << 56) | ((long) x << 28) | y;
+    }
+
+    /**
+     * Bytes do tile (z, x, y) ou null se o pacote não o contém
+     */
+    public byte[] tile(int zoom, int x, int y) {
+        long id = tileId(zoom, x, y);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long entry = HEADER_SIZE + (long) mid * INDEX_ENTRY_SIZE;
+            long midId = getLong(entry);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return read(getLong(entry + 8), getInt(entry + 16));
+            }
+        }
+        return null;
+    }
+
+    private long getLong(long position) {
+        int segment = (int) (position / SEGMENT_SIZE);
+        int offset = (int) (position % SEGMENT_SIZE);
+        if (offset + 8 <= segments[segment].limit()) {
+            return segments[segment].getLong(offset);
+        }
+        long value = 0;
+        for (byte b : read(position, 8)) {
+            value = (value << 8) | (b & 0xFF);
+        }
+        return value;
+    }
+
+    private int getInt(long position) {
+        int segment = (int) (position / SEGMENT_SIZE);
+        int offset = (int) (position % SEGMENT_SIZE);
+        if (offset + 4 <= segments[segment].limit()) {
+            return segments[segment].getInt(offset);
+        }
+        int value = 0;
+        for (byte b : read(position, 4)) {
+            value = (value << 8) | (b & 0xFF);
+        }
+        return value;
+    }
+
+    private byte[] read(long position, int length) {
+        byte[] out = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long current = position + copied;
+            MappedByteBuffer segment = segments[(int) (current / SEGMENT_SIZE)];
+            int offset = (int) (current % SEGMENT_SIZE);
+            int chunk = Math.min(length - copied, segment.limit() - offset);
+            // Lê por uma cópia (duplicate) para não mexer na posição do buffer compartilhado
+            segment.duplicate().position(offset).get(out, copied, chunk);
+            copied += chunk;
+        }
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,155 @@
+package com.sitka.satellite.imagery;
+
+import com.google.maps.model.LatLng;
+import com.sitka.satellite.geo.MapMarker;
+import com.sitka.satellite.geo.WebMercator;
+import com.sitka.satellite.service.BufferPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Imagens montadas localmente a partir de um pacote de tiles pré-baixado
+ * (app.imagery.tile-pack.path), sem acesso à rede.
+ *
+ * Só atende pedidos do tipo de mapa do pacote, com centro (o ImageryService
+ * geocodifica antes) e cuja vista inteira esteja coberta; caso contrário
+ * devolve null e o próximo provedor é consultado.
+ */
+@Component
+public class TilePackImageryProvider implements ImageryProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(TilePackImageryProvider.class);
+
+    @Autowired
+    private BufferPool bufferPool;
+
+    private final String mapType;
+
+    private final TilePack pack;
+
+    public TilePackImageryProvider(
+            @Value("${app.imagery.tile-pack.path:}") String path,
+            @Value("${app.imagery.tile-pack.map-type:satellite}") String mapType) {
+        this.mapType = mapType;
+        this.pack = open(path);
+    }
+
+    private static TilePack open(String path) {
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        Path file = Paths.get(path);
+        if (!Files.isReadable(file)) {
+            logger.warn("Pacote de tiles não encontrado: {}", path);
+            return null;
+        }
+        try {
+            TilePack opened = new TilePack(file);
+            logger.info("✓ Pacote de tiles carregado: {} ({} tiles)", path, opened.size());
+            return opened;
+        } catch (IOException e) {
+            logger.error("Erro ao abrir pacote de tiles: " + path, e);
+            return null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "tile-pack";
+    }
+
+    @Override
+    public boolean requiresCenter(ImageryRequest request) {
+        return pack != null && mapType.equals(request.getMapType());
+    }
+
+    @Override
+    public ImageryResult fetch(ImageryRequest request) throws IOException {
+        LatLng center = request.getCenter();
+        if (!requiresCenter(request) || center == null) {
+            return null;
+        }
+
+        // A vista só vive até ser codificada: raster e stream vêm do pool
+        BufferedImage view = bufferPool.acquireImage(request.getWidth(), request.getHeight());
+        BufferPool.ReusableByteArrayOutputStream out = bufferPool.acquireStream();
+        try {
+            if (!assemble(view, center, request.getZoom())) {
+                return null;
+            }
+            if (request.hasMarker()) {
+                MapMarker.draw(view, request.getWidth() / 2d, request.getHeight() / 2d);
+            }
+            ImageIO.write(view, "png", out);
+            return new ImageryResult(out.toByteArray(), "image/png", getName());
+        } finally {
+            bufferPool.releaseStream(out);
+            bufferPool.releaseImage(view);
+        }
+    }
+
+    /**
+     * Monta em view a vista centrada em center; false se faltar algum tile
+     */
+    private boolean assemble(BufferedImage view, LatLng center, int zoom) throws IOException {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        int tileSize = WebMercator.TILE_SIZE;
+        int tilesPerAxis = 1 << zoom;
+
+        double left = WebMercator.worldX(center.lng, zoom) - width / 2d;
+        double top = WebMercator.worldY(center.lat, zoom) - height / 2d;
+        int originX = (int) Math.floor(left);
+        int originY = (int) Math.floor(top);
+
+        int firstTileX = Math.floorDiv(originX, tileSize);
+        int lastTileX = Math.floorDiv(originX + width - 1, tileSize);
+        int firstTileY = Math.floorDiv(originY, tileSize);
+        int lastTileY = Math.floorDiv(originY + height - 1, tileSize);
+
+        if (firstTileY < 0 || lastTileY >= tilesPerAxis) {
+            return false;
+        }
+
+        Graphics2D g = view.createGraphics();
+        try {
+            for (int ty = firstTileY; ty <= lastTileY; ty++) {
+                for (int tx = firstTileX; tx <= lastTileX; tx++) {
+                    // Longitude dá a volta no antimeridiano
+                    byte[] bytes = pack.tile(zoom, Math.floorMod(tx, tilesPerAxis), ty);
+                    if (bytes == null) {
+                        return false;
+                    }
+                    BufferedImage tile = ImageIO.read(new ByteArrayInputStream(bytes));
+                    if (tile == null) {
+                        throw new IOException("Tile ilegível: " + zoom + "/" + tx + "/" + ty);
+                    }
+                    g.drawImage(tile, tx * tileSize - originX, ty * tileSize - originY, null);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (pack != null) {
+            pack.close();
+        }
+    }
+}
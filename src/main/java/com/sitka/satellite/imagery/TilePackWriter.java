@@ -0,0 +1,99 @@
+package com.sitka.satellite.imagery;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Gera um pacote de tiles (TilePack) a partir de um diretório XYZ.
+ *
+ * Uso:
+ *   java -cp app.jar com.sitka.satellite.imagery.TilePackWriter tiles/ satellite.pack
+ *
+ * O diretório deve conter tiles de 256×256 em {z}/{x}/{y}.png (ou .jpg).
+ */
+public final class TilePackWriter {
+
+    private TilePackWriter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Uso: TilePackWriter <diretorio-xyz> <arquivo-saida>");
+            System.exit(1);
+        }
+        int count = write(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.println("✓ Pacote gerado com " + count + " tiles: " + args[1]);
+    }
+
+    /**
+     * Escreve o pacote e retorna o número de tiles incluídos
+     */
+    public static int write(Path tilesDir, Path output) throws IOException {
+        List<Tile> tiles = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(tilesDir)) {
+            for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                Tile tile = parse(tilesDir.relativize(file), file);
+                if (tile != null) {
+                    tiles.add(tile);
+                }
+            }
+        }
+        tiles.sort(Comparator.comparingLong(tile -> tile.id));
+
+        long offset = TilePack.HEADER_SIZE + (long) tiles.size() * TilePack.INDEX_ENTRY_SIZE;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+            out.write(TilePack.MAGIC);
+            out.writeInt(tiles.size());
+            for (Tile tile : tiles) {
+                out.writeLong(tile.id);
+                out.writeLong(offset);
+                out.writeInt((int) tile.length);
+                offset += tile.length;
+            }
+            for (Tile tile : tiles) {
+                Files.copy(tile.file, out);
+            }
+        }
+        return tiles.size();
+    }
+
+    private static Tile parse(Path relative, Path file) throws IOException {
+        if (relative.getNameCount() != 3) {
+            return null;
+        }
+        String name = relative.getName(2).toString();
+        int dot = name.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        try {
+            int zoom = Integer.parseInt(relative.getName(0).toString());
+            int x = Integer.parseInt(relative.getName(1).toString());
+            int y = Integer.parseInt(name.substring(0, dot));
+            return new Tile(TilePack.tileId(zoom, x, y), file, Files.size(file));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class Tile {
+        final long id;
+        final Path file;
+        final long length;
+
+        Tile(long id, Path file, long length) {
+            this.id = id;
+            this.file = file;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.sitka.satellite.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers reutilizáveis dos caminhos quentes: buffers de cópia de 64 KB,
+ * streams de codificação (que mantêm o array já crescido) e rasters
+ * TYPE_INT_RGB por dimensão. Evita realocar MBs a cada pedido.
+ *
+ * Quem pega um recurso deve devolvê-lo (normalmente num finally); recursos não
+ * devolvidos são apenas coletados pelo GC.
+ */
+@Service
+public class BufferPool {
+
+    static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /** Streams que cresceram além disso não voltam ao pool */
+    private static final int MAX_RETAINED_STREAM_BYTES = 4 * 1024 * 1024;
+
+    private final int maxPooled;
+
+    private final BlockingQueue<byte[]> buffers;
+    private final BlockingQueue<ReusableByteArrayOutputStream> streams;
+    private final Map<Long, BlockingQueue<BufferedImage>> images = new ConcurrentHashMap<>();
+
+    private final Stats bufferStats = new Stats();
+    private final Stats streamStats = new Stats();
+    private final Stats imageStats = new Stats();
+
+    public BufferPool(@Value("${app.memory.pool-size:16}") int maxPooled) {
+        this.maxPooled = Math.max(1, maxPooled);
+        this.buffers = new ArrayBlockingQueue<>(this.maxPooled);
+        this.streams = new ArrayBlockingQueue<>(this.maxPooled);
+    }
+
+    public byte[] acquireBuffer() {
+        byte[] buffer = buffers.poll();
+        bufferStats.acquired(buffer != null);
+        return buffer != null ? buffer : new byte[COPY_BUFFER_SIZE];
+    }
+
+    public void releaseBuffer(byte[] buffer) {
+        if (buffer != null && buffer.length == COPY_BUFFER_SIZE) {
+            bufferStats.released();
+            buffers.offer(buffer);
+        }
+    }
+
+    public ReusableByteArrayOutputStream acquireStream() {
+        ReusableByteArrayOutputStream stream = streams.poll();
+        streamStats.acquired(stream != null);
+        return stream != null ? stream : new ReusableByteArrayOutputStream();
+    }
+
+    public void releaseStream(ReusableByteArrayOutputStream stream) {
+        if (stream != null) {
+            streamStats.released();
+            if (stream.capacity() <= MAX_RETAINED_STREAM_BYTES) {
+                stream.reset();
+                streams.offer(stream);
+            }
+        }
+    }
+
+    /**
+     * Raster TYPE_INT_RGB width×height; o conteúdo anterior não é limpo
+     */
+    public BufferedImage acquireImage(int width, int height) {
+        BlockingQueue<BufferedImage> pool = images.get(imageKey(width, height));
+        BufferedImage image = pool != null ? pool.poll() : null;
+        imageStats.acquired(image != null);
+        return image != null ? image : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    public void releaseImage(BufferedImage image) {
+        if (image != null && image.getType() == BufferedImage.TYPE_INT_RGB) {
+            imageStats.released();
+            images.computeIfAbsent(imageKey(image.getWidth(), image.getHeight()),
+                    k -> new ArrayBlockingQueue<>(Math.max(1, maxPooled / 4))).offer(image);
+        }
+    }
+
+    /**
+     * Lê todo o InputStream usando buffers do pool
+     */
+    public byte[] readAll(InputStream in) throws IOException {
+        ReusableByteArrayOutputStream out = acquireStream();
+        try {
+            copy(in, out);
+            return out.toByteArray();
+        } finally {
+            releaseStream(out);
+        }
+    }
+
+    public long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = acquireBuffer();
+        try {
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                total += read;
+            }
+            return total;
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("copy_buffers", bufferStats.snapshot(buffers.size()));
+        stats.put("streams", streamStats.snapshot(streams.size()));
+        int pooledImages = 0;
+        for (BlockingQueue<BufferedImage> pool : images.values()) {
+            pooledImages += pool.size();
+        }
+        stats.put("images", imageStats.snapshot(pooledImages));
+        return stats;
+    }
+
+    private static long imageKey(int width, int height) {
+        return ((long) width << 32) | (height & 0xFFFFFFFFL);
+    }
+
+    /**
+     * ByteArrayOutputStream que mantém o array interno entre usos
+     */
+    public static final class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+        ReusableByteArrayOutputStream() {
+            super(256 * 1024);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+
+    private static final class Stats {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong allocations = new AtomicLong();
+        private final AtomicLong inUse = new AtomicLong();
+
+        void acquired(boolean fromPool) {
+            (fromPool ? hits : allocations).incrementAndGet();
+            inUse.incrementAndGet();
+        }
+
+        void released() {
+            inUse.decrementAndGet();
+        }
+
+        Map<String, Object> snapshot(int pooled) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("hits", hits.get());
+            stats.put("allocations", allocations.get());
+            stats.put("in_use", Math.max(0, inUse.get()));
+            stats.put("pooled", pooled);
+            return stats;
+        }
+    }
+}
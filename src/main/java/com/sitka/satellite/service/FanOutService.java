@@ -0,0 +1,170 @@
+package com.sitka.satellite.service;
+
+import com.sitka.satellite.util.PhoneNumbers;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.content.ByteArrayBody;
+import org.apache.http.entity.mime.content.ContentBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Envio da mesma imagem de satélite para vários destinatários.
+ *
+ * A imagem é baixada e codificada uma única vez, a parte multipart é montada
+ * uma única vez e os uploads para o WATI são disparados em paralelo, limitados
+ * por app.fanout.max-parallelism.
+ */
+@Service
+public class FanOutService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FanOutService.class);
+
+    @Autowired
+    private SatelliteImageService satelliteImageService;
+
+    @Autowired
+    private WatiMessageService watiMessageService;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    private final ExecutorService executor;
+
+    public FanOutService(@Value("${app.fanout.max-parallelism:4}") int maxParallelism) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, maxParallelism), runnable -> {
+            Thread thread = new Thread(runnable, "wati-fanout-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gera a imagem do endereço uma vez e envia para todos os telefones
+     */
+    public Map<String, Object> sendToRecipients(String endereco, List<String> telefones) {
+        Map<String, Object> response = new HashMap<>();
+
+        // Telefones repetidos (com ou sem máscara) recebem a imagem uma vez só
+        Set<String> destinatarios = PhoneNumbers.unique(telefones, telefone -> telefone).keySet();
+
+        if (destinatarios.isEmpty()) {
+            response.put("ok", false);
+            response.put("result", "error");
+            response.put("mensagem_imagemdesatelite", "Nenhum telefone válido fornecido");
+            return response;
+        }
+
+        try (MemoryBudget.Permit permit = memoryBudget.acquire(SatelliteImageService.ESTIMATED_PIPELINE_BYTES)) {
+            if (permit == null) {
+                response.put("ok", false);
+                response.put("result", "error");
+                response.put("mensagem_imagemdesatelite", "Servidor ocupado, tente novamente em instantes");
+                return response;
+            }
+            return sendToRecipients(endereco, destinatarios, response);
+        }
+    }
+
+    private Map<String, Object> sendToRecipients(String endereco, Set<String> destinatarios,
+                                                 Map<String, Object> response) {
+        BufferedImage image = satelliteImageService.generateSatelliteImage(endereco);
+        if (image == null) {
+            response.put("ok", false);
+            response.put("result", "error");
+            response.put("mensagem_imagemdesatelite", "Erro ao gerar imagem de satélite");
+            return response;
+        }
+
+        byte[] png = satelliteImageService.encodePng(image);
+        if (png == null) {
+            response.put("ok", false);
+            response.put("result", "error");
+            response.put("mensagem_imagemdesatelite", "Erro ao codificar imagem");
+            return response;
+        }
+
+        String chave = ImageStore.keyFor(endereco);
+        try {
+            satelliteImageService.storeEncoded(image, endereco, png);
+        } catch (Exception e) {
+            // Não impede o envio: só a URL direta da imagem fica indisponível
+            logger.warn("Erro ao armazenar imagem de {}: {}", endereco, e.getMessage());
+        }
+
+        // ByteArrayBody é imutável: a mesma parte serve para todos os envios
+        ContentBody media = new ByteArrayBody(png, ContentType.IMAGE_PNG, "satellite_image.png");
+        String caption = "Imagem de satélite do imóvel: " + endereco;
+
+        logger.info("Enviando imagem ({} KB) para {} destinatários", png.length / 1024, destinatarios.size());
+
+        List<CompletableFuture<Map<String, Object>>> envios = new ArrayList<>();
+        for (String telefone : destinatarios) {
+            envios.add(CompletableFuture.supplyAsync(() -> sendOne(telefone, media, caption), executor));
+        }
+
+        List<Map<String, Object>> resultados = new ArrayList<>();
+        int enviados = 0;
+        for (CompletableFuture<Map<String, Object>> envio : envios) {
+            Map<String, Object> resultado = envio.join();
+            if (Boolean.TRUE.equals(resultado.get("ok"))) {
+                enviados++;
+            }
+            resultados.add(resultado);
+        }
+
+        int falhas = resultados.size() - enviados;
+        logger.info("✓ Envio múltiplo concluído: {} enviados, {} falhas", enviados, falhas);
+
+        response.put("ok", falhas == 0);
+        response.put("result", falhas == 0 ? "success" : (enviados == 0 ? "error" : "partial"));
+        response.put("mensagem_imagemdesatelite", enviados + " de " + resultados.size() + " envios concluídos");
+        response.put("imagemdesatelite_chave", chave);
+        response.put("imagemdesatelite_url", ImageStore.URL_PREFIX + chave);
+        response.put("total", resultados.size());
+        response.put("enviados", enviados);
+        response.put("falhas", falhas);
+        response.put("resultados", resultados);
+        return response;
+    }
+
+    private Map<String, Object> sendOne(String telefone, ContentBody media, String caption) {
+        Map<String, Object> resultado = new HashMap<>();
+        resultado.put("telefone", telefone);
+        try {
+            Map<String, Object> wati = watiMessageService.sendFile(telefone, media, caption);
+            resultado.put("ok", Boolean.TRUE.equals(wati.get("ok")));
+            resultado.put("status_code", wati.get("status_code"));
+            resultado.put("message", wati.get("message"));
+            if (wati.containsKey("error")) {
+                resultado.put("error", wati.get("error"));
+            }
+        } catch (Exception e) {
+            logger.error("Erro ao enviar para " + telefone, e);
+            resultado.put("ok", false);
+            resultado.put("message", "Erro ao processar envio");
+            resultado.put("error", e.getMessage());
+        }
+        return resultado;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
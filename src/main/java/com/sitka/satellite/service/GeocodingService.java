@@ -4,25 +4,60 @@ import com.google.maps.GeoApiContext;
 import com.google.maps.GeocodingApi;
 import com.google.maps.model.GeocodingResult;
 import com.google.maps.model.LatLng;
+import com.sitka.satellite.timing.StageTimer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 @Service
+@Lazy(false)
 public class GeocodingService {
 
-    private final GeoApiContext context;
+    private final String apiKey;
 
-    public GeocodingService(@Value("${GOOGLE_API_KEY}") String apiKey) {
-        this.context = new GeoApiContext.Builder()
-                .apiKey(apiKey)
-                .build();
+    private final LocalGeocodingIndex localIndex;
+
+    // Criado só na primeira geocodificação remota: o GeoApiContext sobe
+    // OkHttp/dispatcher e não deve pesar no cold start
+    private volatile GeoApiContext context;
+
+    public GeocodingService(@Value("${app.google.api-key:}") String apiKey, LocalGeocodingIndex localIndex) {
+        this.apiKey = apiKey;
+        this.localIndex = localIndex;
     }
 
     public LatLng getLatLng(String address) throws Exception {
-        GeocodingResult[] results = GeocodingApi.geocode(context, address).await();
-        if (results.length > 0) {
-            return results[0].geometry.location;
+        try (StageTimer.Stage stage = StageTimer.start("geocode")) {
+            // Índice local (CEP/gazetteer) primeiro; Google só nos casos não encontrados
+            LatLng local = localIndex.lookup(address);
+            if (local != null) {
+                stage.status("local");
+                return local;
+            }
+
+            stage.status("google");
+            GeocodingResult[] results = GeocodingApi.geocode(context(), address).await();
+            if (results.length > 0) {
+                return results[0].geometry.location;
+            }
+            stage.status("not-found");
+            return null;
+        }
+    }
+
+    private GeoApiContext context() {
+        GeoApiContext current = context;
+        if (current == null) {
+            synchronized (this) {
+                current = context;
+                if (current == null) {
+                    current = new GeoApiContext.Builder()
+                            .apiKey(apiKey)
+                            .build();
+                    context = current;
+                }
+            }
         }
-        return null;
+        return current;
     }
 }
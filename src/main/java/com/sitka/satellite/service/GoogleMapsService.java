@@ -1,45 +1,36 @@
 package com.sitka.satellite.service;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.sitka.satellite.imagery.ImageryRequest;
+import com.sitka.satellite.imagery.ImageryResult;
+import com.sitka.satellite.imagery.ImageryService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.net.URL;
-import java.net.URLEncoder;
+import java.nio.file.Files;
 
 @Service
 public class GoogleMapsService {
 
     private static final Logger logger = LoggerFactory.getLogger(GoogleMapsService.class);
 
-    @Value("${app.google.api-key:}")
-    private String googleApiKey;
+    @Autowired
+    private ImageryService imageryService;
 
     public File getSatelliteImage(String address) {
         try {
-            String encodedAddress = URLEncoder.encode(address, "UTF-8");
-            String imageUrl = String.format(
-                "https://maps.googleapis.com/maps/api/staticmap?center=%s&zoom=15&size=600x400&maptype=satellite&key=%s",
-                encodedAddress, googleApiKey);
+            ImageryResult result = imageryService.fetch(
+                    new ImageryRequest(address, null, 15, 600, 400, "satellite", false));
 
-            URL url = new URL(imageUrl);
-            InputStream in = url.openStream();
-
-            File tempFile = File.createTempFile("satellite-", ".png");
-            FileOutputStream out = new FileOutputStream(tempFile);
-
-            byte[] buffer = new byte[1024];
-            int bytesRead;
-            while ((bytesRead = in.read(buffer)) != -1) {
-                out.write(buffer, 0, bytesRead);
+            if (result == null) {
+                logger.error("Nenhum provedor de imagens atendeu o endereço: {}", address);
+                return null;
             }
 
-            in.close();
-            out.close();
+            File tempFile = File.createTempFile("satellite-", ".png");
+            Files.write(tempFile.toPath(), result.getBytes());
 
             logger.info("Imagem de satélite gerada com sucesso para o endereço: {}", address);
             return tempFile;
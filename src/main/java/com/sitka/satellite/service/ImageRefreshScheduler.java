@@ -0,0 +1,170 @@
+package com.sitka.satellite.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fila de atualizações em segundo plano das imagens servidas vencidas
+ * (stale-while-revalidate).
+ *
+ * Executa no máximo app.stale-while-revalidate.refreshes-per-minute
+ * atualizações, uma por vez, sempre a da chave mais acessada entre as
+ * pendentes. Cada atualização reserva memória no MemoryBudget como um pedido
+ * comum; sem memória disponível, ela continua pendente para a próxima rodada.
+ */
+@Service
+public class ImageRefreshScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageRefreshScheduler.class);
+
+    /** Limite de chaves com contagem de acessos; acima disso as contagens são reduzidas à metade */
+    static final int MAX_TRACKED_KEYS = 10_000;
+
+    private final MemoryBudget memoryBudget;
+
+    private final Map<String, AtomicLong> accesses = new ConcurrentHashMap<>();
+    private final Map<String, Callable<Boolean>> pending = new ConcurrentHashMap<>();
+    /** Chaves pendentes ou em execução (reservadas atomicamente em schedule) */
+    private final Set<String> scheduled = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong changed = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+
+    private final ScheduledExecutorService scheduler;
+
+    public ImageRefreshScheduler(
+            MemoryBudget memoryBudget,
+            @Value("${app.stale-while-revalidate.enabled:false}") boolean enabled,
+            @Value("${app.stale-while-revalidate.refreshes-per-minute:30}") int refreshesPerMinute) {
+        this.memoryBudget = memoryBudget;
+        if (!enabled) {
+            this.scheduler = null;
+            return;
+        }
+        long intervalMs = 60_000L / Math.max(1, refreshesPerMinute);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "image-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::refreshNext, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordAccess(String key) {
+        if (accesses.size() >= MAX_TRACKED_KEYS && !accesses.containsKey(key)) {
+            age();
+        }
+        accesses.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Envelhece as contagens: reduz todas à metade e descarta as zeradas, até
+     * abrir espaço. Chaves quentes mantêm a ordem relativa em vez de perderem
+     * o histórico inteiro.
+     */
+    private void age() {
+        synchronized (accesses) {
+            while (accesses.size() >= MAX_TRACKED_KEYS) {
+                for (AtomicLong count : accesses.values()) {
+                    count.updateAndGet(n -> n / 2);
+                }
+                accesses.values().removeIf(count -> count.get() == 0);
+            }
+        }
+    }
+
+    long accessCount(String key) {
+        AtomicLong count = accesses.get(key);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Agenda a atualização da chave (ignorado se já pendente ou em execução).
+     * A tarefa retorna true se o conteúdo mudou.
+     */
+    public void schedule(String key, Callable<Boolean> refresh) {
+        if (scheduler != null && scheduled.add(key)) {
+            pending.put(key, refresh);
+        }
+    }
+
+    void refreshNext() {
+        String key = null;
+        long best = -1;
+        for (String candidate : pending.keySet()) {
+            AtomicLong count = accesses.get(candidate);
+            long hits = count != null ? count.get() : 0;
+            if (hits > best) {
+                best = hits;
+                key = candidate;
+            }
+        }
+        if (key == null) {
+            return;
+        }
+
+        try (MemoryBudget.Permit permit = memoryBudget.acquire(SatelliteImageService.ESTIMATED_PIPELINE_BYTES)) {
+            if (permit == null) {
+                // Sem memória agora: a chave continua pendente para a próxima rodada
+                deferred.incrementAndGet();
+                return;
+            }
+            run(key);
+        }
+    }
+
+    private void run(String key) {
+        Callable<Boolean> refresh = pending.remove(key);
+        if (refresh == null) {
+            return;
+        }
+        try {
+            refreshes.incrementAndGet();
+            if (Boolean.TRUE.equals(refresh.call())) {
+                changed.incrementAndGet();
+            } else {
+                unchanged.incrementAndGet();
+            }
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            logger.warn("Erro ao atualizar imagem {}: {}", key, e.getMessage());
+        } finally {
+            scheduled.remove(key);
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", scheduler != null);
+        stats.put("pending", pending.size());
+        stats.put("refreshes", refreshes.get());
+        stats.put("changed", changed.get());
+        stats.put("unchanged", unchanged.get());
+        stats.put("failures", failures.get());
+        stats.put("deferred", deferred.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package com.sitka.satellite.service;
+
+import com.sitka.satellite.util.AddressNormalizer;
+import com.sitka.satellite.util.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Armazena em disco as imagens geradas, por chave derivada do endereço.
+ *
+ * O conteúdo é endereçado pelo hash SHA-256: cada imagem distinta fica uma
+ * única vez em {app.image-store.dir}/blobs/{hash}.png e cada chave aponta para
+ * ela por {chave}.ref (que contém só o hash). Imagens idênticas de endereços
+ * diferentes (placeholders, vizinhos no mesmo recorte) ocupam um arquivo só.
+ * O hash serve também como ETag forte.
+ *
+ * Cada blob tem um contador de referências; criar, reaproveitar e apagar
+ * blobs acontece sob um único lock, então um blob nunca some enquanto outra
+ * chave passa a apontar para ele. Um blob sem referências só é apagado
+ * app.image-store.blob-delete-delay-seconds depois, para não sumir embaixo de uma resposta que
+ * ainda vai lê-lo (o sendfile do Tomcat abre o arquivo depois do handler).
+ *
+ * O índice é reconstruído do disco na inicialização (referências em ordem de
+ * gravação, tamanhos dos blobs), removendo temporários, referências quebradas
+ * e blobs órfãos; max-entries e max-size-mb valem desde o início.
+ *
+ * Blobs sem chave (putBlob/releaseBlob, usados pelo SpatialImageIndex) entram
+ * na mesma contagem de referências; como seus donos só existem em memória,
+ * eles são tratados como órfãos na inicialização seguinte.
+ *
+ * Regravar uma imagem com o mesmo conteúdo não toca no disco nem muda o ETag;
+ * markValidated apenas registra que a origem confirmou a versão armazenada.
+ */
+@Service
+public class ImageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageStore.class);
+
+    /** Caminho público das imagens (ImageServingController) */
+    public static final String URL_PREFIX = "/analise-imagemdesatelite/imagem/";
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{32}");
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path dir;
+    private final Path blobs;
+    private final int maxEntries;
+    private final long maxBytes;
+
+    /** Tempo mínimo entre o blob perder a última referência e ser apagado */
+    private final long blobDeleteDelayMs;
+
+    private final Object lock = new Object();
+
+    /** Chave → imagem, em ordem de gravação (a mais antiga primeiro); guardado por lock */
+    private final LinkedHashMap<String, StoredImage> entries = new LinkedHashMap<>();
+
+    /** Hash → número de referências ao blob (chaves e outros donos); guardado por lock */
+    private final Map<String, Integer> refCounts = new HashMap<>();
+
+    /** Hash → tamanho de cada blob referenciado; guardado por lock */
+    private final Map<String, Long> blobSizes = new HashMap<>();
+
+    /** Blobs sem referências aguardando remoção: hash → instante da liberação; guardado por lock */
+    private final LinkedHashMap<String, Long> pendingDeletes = new LinkedHashMap<>();
+
+    /** Soma dos tamanhos dos blobs referenciados; guardado por lock */
+    private long totalBytes;
+
+    private final AtomicLong blobWrites = new AtomicLong();
+    private final AtomicLong dedupHits = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    public ImageStore(
+            @Value("${app.image-store.dir:/root/sitka-temp/cache/}") String dir,
+            @Value("${app.image-store.max-entries:2000}") int maxEntries,
+            @Value("${app.image-store.max-size-mb:1024}") long maxSizeMb,
+            @Value("${app.image-store.blob-delete-delay-seconds:60}") long blobDeleteDelaySeconds) {
+        this.dir = Paths.get(dir);
+        this.blobs = this.dir.resolve("blobs");
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = Math.max(1, maxSizeMb) * 1024 * 1024;
+        this.blobDeleteDelayMs = Math.max(0, blobDeleteDelaySeconds) * 1000;
+        rebuildIndex();
+    }
+
+    /**
+     * Carrega as referências gravadas por execuções anteriores (a mais antiga
+     * primeiro) e limpa o que não é alcançável a partir delas
+     */
+    private void rebuildIndex() {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        List<StoredImage> found = new ArrayList<>();
+        try {
+            deleteTemporaries(dir);
+            deleteTemporaries(blobs);
+            try (DirectoryStream<Path> refs = Files.newDirectoryStream(dir, "*.ref")) {
+                for (Path ref : refs) {
+                    StoredImage stored = readRef(ref);
+                    if (stored == null) {
+                        Files.deleteIfExists(ref);
+                    } else {
+                        found.add(stored);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Erro ao carregar o índice de imagens de " + dir, e);
+        }
+        found.sort(Comparator.comparingLong(StoredImage::getStoredAt));
+
+        synchronized (lock) {
+            for (StoredImage stored : found) {
+                entries.put(stored.getKey(), stored);
+                if (refCounts.merge(stored.getContentHash(), 1, Integer::sum) == 1) {
+                    blobSizes.put(stored.getContentHash(), stored.getSize());
+                    totalBytes += stored.getSize();
+                }
+            }
+            int orphans = 0;
+            if (Files.isDirectory(blobs)) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(blobs, "*.png")) {
+                    for (Path blob : files) {
+                        String name = blob.getFileName().toString();
+                        if (!refCounts.containsKey(name.substring(0, name.length() - 4))) {
+                            Files.deleteIfExists(blob);
+                            orphans++;
+                        }
+                    }
+                } catch (Exception e) {
+                    logger.warn("Erro ao remover imagens órfãs: {}", e.getMessage());
+                }
+            }
+            evictIfNeeded();
+            if (!entries.isEmpty() || orphans > 0) {
+                logger.info("ImageStore: {} imagens ({} distintas, {} KB) carregadas de {}; {} órfãs removidas",
+                        entries.size(), refCounts.size(), totalBytes / 1024, dir, orphans);
+            }
+        }
+    }
+
+    /**
+     * Entrada descrita por {chave}.ref, ou null se a referência estiver quebrada
+     */
+    private StoredImage readRef(Path ref) throws Exception {
+        String name = ref.getFileName().toString();
+        String key = name.substring(0, name.length() - 4);
+        if (!isValidKey(key) || !Files.isRegularFile(ref)) {
+            return null;
+        }
+        String contentHash = new String(Files.readAllBytes(ref), StandardCharsets.US_ASCII).trim();
+        if (!HASH_PATTERN.matcher(contentHash).matches()) {
+            return null;
+        }
+        Path blob = blobs.resolve(contentHash + ".png");
+        if (!Files.isRegularFile(blob)) {
+            return null;
+        }
+        long modified = Files.getLastModifiedTime(ref).toMillis();
+        return new StoredImage(key, blob, contentHash, Files.size(blob), modified, modified);
+    }
+
+    private static void deleteTemporaries(Path parent) throws Exception {
+        if (!Files.isDirectory(parent)) {
+            return;
+        }
+        try (DirectoryStream<Path> temporaries = Files.newDirectoryStream(parent, "*.tmp")) {
+            for (Path tmp : temporaries) {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    /**
+     * Chave estável do endereço (independe de acentos, caixa e pontuação)
+     */
+    public static String keyFor(String endereco) {
+        return Hashing.sha256Hex(AddressNormalizer.normalize(endereco).getBytes(StandardCharsets.UTF_8))
+                .substring(0, 32);
+    }
+
+    public static boolean isValidKey(String key) {
+        return key != null && KEY_PATTERN.matcher(key).matches();
+    }
+
+    /**
+     * Grava a imagem (PNG) sob a chave, substituindo a anterior de forma atômica.
+     * Se o conteúdo for idêntico ao armazenado, devolve a entrada existente; se
+     * outra chave já tiver o mesmo conteúdo, só a referência é gravada.
+     */
+    public StoredImage put(String key, byte[] png) throws Exception {
+        String contentHash = Hashing.sha256Hex(png);
+        StoredImage existing = get(key);
+        if (existing != null && existing.getContentHash().equals(contentHash)) {
+            return existing;
+        }
+
+        // Conteúdo novo é escrito fora do lock; sob o lock só há a renomeação
+        Path tmp = Files.isRegularFile(blobPath(contentHash)) ? null : writeTemp(blobs, png);
+        try {
+            synchronized (lock) {
+                Path blob = retain(contentHash, tmp, png);
+                writeAtomically(dir, dir.resolve(key + ".ref"), contentHash.getBytes(StandardCharsets.US_ASCII));
+
+                long now = System.currentTimeMillis();
+                StoredImage stored = new StoredImage(key, blob, contentHash, png.length, now, now);
+                StoredImage previous = entries.remove(key);
+                entries.put(key, stored);
+                if (previous != null) {
+                    release(previous.getContentHash());
+                }
+                evictIfNeeded();
+                return stored;
+            }
+        } finally {
+            if (tmp != null) {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    /**
+     * Imagem armazenada sob a chave, ou null se não existir
+     */
+    public StoredImage get(String key) {
+        if (!isValidKey(key)) {
+            return null;
+        }
+        synchronized (lock) {
+            return entries.get(key);
+        }
+    }
+
+    /**
+     * Registra que a imagem da chave acabou de ser confirmada pela origem
+     */
+    public void markValidated(String key) {
+        synchronized (lock) {
+            entries.computeIfPresent(key, (k, stored) -> new StoredImage(stored.key, stored.path,
+                    stored.contentHash, stored.size, stored.storedAt, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Grava um blob sem chave (ex.: imagens do índice espacial) e devolve o hash.
+     * Cada chamada soma uma referência, devolvida com releaseBlob.
+     */
+    public String putBlob(byte[] data) throws Exception {
+        String contentHash = Hashing.sha256Hex(data);
+        Path tmp = Files.isRegularFile(blobPath(contentHash)) ? null : writeTemp(blobs, data);
+        try {
+            synchronized (lock) {
+                retain(contentHash, tmp, data);
+                evictIfNeeded();
+            }
+        } finally {
+            if (tmp != null) {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        return contentHash;
+    }
+
+    public Path blobPath(String contentHash) {
+        return blobs.resolve(contentHash + ".png");
+    }
+
+    /**
+     * Devolve uma referência obtida com putBlob
+     */
+    public void releaseBlob(String contentHash) {
+        synchronized (lock) {
+            if (refCounts.containsKey(contentHash)) {
+                release(contentHash);
+                deletePendingBlobs(System.currentTimeMillis());
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (lock) {
+            stats.put("entries", entries.size());
+            stats.put("distinct_images", refCounts.size());
+            stats.put("bytes", totalBytes);
+            stats.put("max_bytes", maxBytes);
+            stats.put("pending_deletes", pendingDeletes.size());
+        }
+        stats.put("blob_writes", blobWrites.get());
+        stats.put("dedup_hits", dedupHits.get());
+        stats.put("bytes_saved", bytesSaved.get());
+        return stats;
+    }
+
+    /**
+     * Soma uma referência ao blob do hash. Se ele ainda não existir, move tmp
+     * para o lugar (ou grava data, se tmp for null). Chamado sob lock.
+     */
+    private Path retain(String contentHash, Path tmp, byte[] data) throws Exception {
+        Path blob = blobs.resolve(contentHash + ".png");
+        pendingDeletes.remove(contentHash);
+        if (Files.isRegularFile(blob)) {
+            dedupHits.incrementAndGet();
+            bytesSaved.addAndGet(data.length);
+        } else {
+            if (tmp != null) {
+                Files.move(tmp, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                // Blob apagado entre a checagem e o lock
+                writeAtomically(blobs, blob, data);
+            }
+            blobWrites.incrementAndGet();
+        }
+        if (refCounts.merge(contentHash, 1, Integer::sum) == 1) {
+            blobSizes.put(contentHash, (long) data.length);
+            totalBytes += data.length;
+        }
+        return blob;
+    }
+
+    /**
+     * Tira uma referência do blob; sem nenhuma, ele entra na fila de remoção.
+     * Chamado sob lock.
+     */
+    private void release(String contentHash) {
+        Integer count = refCounts.get(contentHash);
+        if (count != null && count > 1) {
+            refCounts.put(contentHash, count - 1);
+            return;
+        }
+        refCounts.remove(contentHash);
+        Long size = blobSizes.remove(contentHash);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        pendingDeletes.put(contentHash, System.currentTimeMillis());
+    }
+
+    /**
+     * Apaga os blobs liberados há pelo menos blob-delete-delay-seconds. Chamado sob lock.
+     */
+    private void deletePendingBlobs(long now) {
+        Iterator<Map.Entry<String, Long>> pending = pendingDeletes.entrySet().iterator();
+        while (pending.hasNext()) {
+            Map.Entry<String, Long> entry = pending.next();
+            if (now - entry.getValue() < blobDeleteDelayMs) {
+                break;
+            }
+            pending.remove();
+            Path blob = blobs.resolve(entry.getKey() + ".png");
+            try {
+                Files.deleteIfExists(blob);
+            } catch (Exception e) {
+                logger.warn("Erro ao remover imagem antiga {}: {}", blob, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Remove as imagens mais antigas quando passa de app.image-store.max-entries
+     * ou de app.image-store.max-size-mb (a mais recente sempre fica). Chamado sob lock.
+     */
+    private void evictIfNeeded() {
+        Iterator<StoredImage> oldest = entries.values().iterator();
+        while ((entries.size() > maxEntries || (totalBytes > maxBytes && entries.size() > 1)) && oldest.hasNext()) {
+            StoredImage evicted = oldest.next();
+            oldest.remove();
+            try {
+                Files.deleteIfExists(dir.resolve(evicted.getKey() + ".ref"));
+            } catch (Exception e) {
+                logger.warn("Erro ao remover referência {}: {}", evicted.getKey(), e.getMessage());
+            }
+            release(evicted.getContentHash());
+        }
+        deletePendingBlobs(System.currentTimeMillis());
+    }
+
+    private static Path writeTemp(Path parent, byte[] data) throws Exception {
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, "blob", ".tmp");
+        Files.write(tmp, data);
+        return tmp;
+    }
+
+    private static void writeAtomically(Path parent, Path target, byte[] data) throws Exception {
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, data);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Metadados de uma imagem armazenada
+     */
+    public static final class StoredImage {
+        private final String key;
+        private final Path path;
+        private final String contentHash;
+        private final long size;
+        private final long storedAt;
+        private final long validatedAt;
+
+        StoredImage(String key, Path path, String contentHash, long size, long storedAt, long validatedAt) {
+            this.key = key;
+            this.path = path;
+            this.contentHash = contentHash;
+            this.size = size;
+            this.storedAt = storedAt;
+            this.validatedAt = validatedAt;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getStoredAt() {
+            return storedAt;
+        }
+
+        /**
+         * Última vez que a origem confirmou este conteúdo (base do frescor)
+         */
+        public long getValidatedAt() {
+            return validatedAt;
+        }
+
+        /**
+         * ETag forte (entre aspas) derivado do conteúdo
+         */
+        public String getETag() {
+            return "\"" + contentHash + "\"";
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.sitka.satellite.service;
+
+import com.google.maps.model.LatLng;
+import com.sitka.satellite.util.AddressNormalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Geocodificação offline a partir de um gazetteer local (CEP/logradouro → lat/lng).
+ *
+ * Arquivo CSV (separado por ";" ou tab) configurado em app.geocoding.local-index,
+ * uma entrada por linha:
+ *
+ *   01310100;-23.561414;-46.655881
+ *   av paulista 1000 sao paulo sp;-23.564500;-46.652500
+ *
+ * As chaves são normalizadas (minúsculas, sem acentos, só letras/dígitos) e
+ * guardadas ordenadas num único byte[] com offsets em int[]; as coordenadas
+ * ficam em int[] de micrograus. Não há um objeto por entrada, então um
+ * gazetteer de alguns milhões de linhas ocupa poucas dezenas de MB.
+ *
+ * A busca tenta primeiro o CEP contido no endereço e depois o endereço
+ * normalizado inteiro. Não há casamento parcial: um logradouro sem número e
+ * cidade casaria com homônimos de outras cidades, então qualquer coisa que
+ * não seja a chave completa é tratada como ausente e vai para o Google.
+ */
+@Service
+public class LocalGeocodingIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalGeocodingIndex.class);
+
+    private static final Pattern CEP_PATTERN = Pattern.compile("(?<!\\d)(\\d{5})-?(\\d{3})(?!\\d)");
+
+    private byte[] keyData = new byte[0];
+    private int[] keyOffsets = new int[]{0};
+    private int[] latE6 = new int[0];
+    private int[] lngE6 = new int[0];
+    private int size;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public LocalGeocodingIndex(@Value("${app.geocoding.local-index:}") String indexPath) {
+        if (indexPath == null || indexPath.isEmpty()) {
+            return;
+        }
+        Path path = Paths.get(indexPath);
+        if (!Files.isReadable(path)) {
+            logger.warn("Índice de geocodificação local não encontrado: {}", indexPath);
+            return;
+        }
+        try {
+            load(path);
+        } catch (Exception e) {
+            logger.error("Erro ao carregar índice de geocodificação local: " + indexPath, e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return size > 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Procura o endereço no índice local; retorna null quando não encontrado
+     */
+    public LatLng lookup(String address) {
+        if (size == 0 || address == null) {
+            return null;
+        }
+
+        Matcher cep = CEP_PATTERN.matcher(address);
+        if (cep.find()) {
+            int idx = find(ascii(cep.group(1) + cep.group(2)));
+            if (idx >= 0) {
+                hits.incrementAndGet();
+                return toLatLng(idx);
+            }
+        }
+
+        byte[] query = ascii(AddressNormalizer.normalize(address));
+        if (query.length > 0) {
+            int idx = find(query);
+            if (idx >= 0) {
+                hits.incrementAndGet();
+                return toLatLng(idx);
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Lê o arquivo direto para os arrays compactos (chaves concatenadas em
+     * byte[], sem um String por linha) e ordena um int[] de índices
+     */
+    private void load(Path path) throws Exception {
+        long start = System.currentTimeMillis();
+        byte[] rawData = new byte[64 * 1024];
+        int[] rawOffsets = new int[1025];
+        int[] lats = new int[1024];
+        int[] lngs = new int[1024];
+        int count = 0;
+        int rawPos = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("[;\\t]");
+                if (parts.length < 3) {
+                    continue;
+                }
+                String key = parts[0].trim();
+                Matcher cep = CEP_PATTERN.matcher(key);
+                key = cep.matches() ? cep.group(1) + cep.group(2) : AddressNormalizer.normalize(key);
+                if (key.isEmpty()) {
+                    continue;
+                }
+                double lat;
+                double lng;
+                try {
+                    lat = Double.parseDouble(parts[1].trim());
+                    lng = Double.parseDouble(parts[2].trim());
+                } catch (NumberFormatException e) {
+                    // Cabeçalho ou linha inválida
+                    continue;
+                }
+                byte[] bytes = ascii(key);
+                if (rawPos + bytes.length > rawData.length) {
+                    rawData = Arrays.copyOf(rawData, Math.max(rawData.length * 2, rawPos + bytes.length));
+                }
+                if (count == lats.length) {
+                    lats = Arrays.copyOf(lats, count * 2);
+                    lngs = Arrays.copyOf(lngs, count * 2);
+                    rawOffsets = Arrays.copyOf(rawOffsets, count * 2 + 1);
+                }
+                System.arraycopy(bytes, 0, rawData, rawPos, bytes.length);
+                rawOffsets[count] = rawPos;
+                rawPos += bytes.length;
+                rawOffsets[count + 1] = rawPos;
+                lats[count] = (int) Math.round(lat * 1_000_000d);
+                lngs[count] = (int) Math.round(lng * 1_000_000d);
+                count++;
+            }
+        }
+
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        // Ordenação estável: entre chaves duplicadas, a primeira do arquivo vem antes
+        mergeSort(order, new int[count], 0, count, rawData, rawOffsets);
+
+        byte[] data = new byte[rawPos];
+        int[] offsets = new int[count + 1];
+        int[] sortedLats = new int[count];
+        int[] sortedLngs = new int[count];
+        int n = 0;
+        int pos = 0;
+        int previous = -1;
+        for (int i = 0; i < count; i++) {
+            int entry = order[i];
+            if (previous >= 0 && compareRaw(rawData, rawOffsets, previous, entry) == 0) {
+                // Chave duplicada: mantém a primeira ocorrência do arquivo
+                continue;
+            }
+            int length = rawOffsets[entry + 1] - rawOffsets[entry];
+            System.arraycopy(rawData, rawOffsets[entry], data, pos, length);
+            offsets[n] = pos;
+            sortedLats[n] = lats[entry];
+            sortedLngs[n] = lngs[entry];
+            pos += length;
+            n++;
+            previous = entry;
+        }
+        offsets[n] = pos;
+
+        this.keyData = pos == data.length ? data : Arrays.copyOf(data, pos);
+        this.keyOffsets = n == count ? offsets : Arrays.copyOf(offsets, n + 1);
+        this.latE6 = n == count ? sortedLats : Arrays.copyOf(sortedLats, n);
+        this.lngE6 = n == count ? sortedLngs : Arrays.copyOf(sortedLngs, n);
+        this.size = n;
+
+        logger.info("✓ Índice de geocodificação local carregado: {} entradas ({} KB) em {} ms",
+                n, (pos + n * 12L) / 1024, System.currentTimeMillis() - start);
+    }
+
+    private static void mergeSort(int[] order, int[] tmp, int from, int to, byte[] data, int[] offsets) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(order, tmp, from, mid, data, offsets);
+        mergeSort(order, tmp, mid, to, data, offsets);
+        if (compareRaw(data, offsets, order[mid - 1], order[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, tmp, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && compareRaw(data, offsets, tmp[left], tmp[right]) <= 0)) {
+                order[i] = tmp[left++];
+            } else {
+                order[i] = tmp[right++];
+            }
+        }
+    }
+
+    private static int compareRaw(byte[] data, int[] offsets, int a, int b) {
+        int aStart = offsets[a];
+        int bStart = offsets[b];
+        int aLength = offsets[a + 1] - aStart;
+        int bLength = offsets[b + 1] - bStart;
+        int limit = Math.min(aLength, bLength);
+        for (int i = 0; i < limit; i++) {
+            int diff = data[aStart + i] - data[bStart + i];
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    /**
+     * Busca binária exata pela chave
+     */
+    private int find(byte[] query) {
+        int length = query.length;
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(mid, query, length);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compare(int entry, byte[] query, int length) {
+        int start = keyOffsets[entry];
+        int keyLength = keyOffsets[entry + 1] - start;
+        int limit = Math.min(keyLength, length);
+        for (int i = 0; i < limit; i++) {
+            int diff = keyData[start + i] - query[i];
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return keyLength - length;
+    }
+
+    private LatLng toLatLng(int idx) {
+        return new LatLng(latE6[idx] / 1_000_000d, lngE6[idx] / 1_000_000d);
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
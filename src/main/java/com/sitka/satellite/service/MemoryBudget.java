@@ -0,0 +1,118 @@
+package com.sitka.satellite.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Orçamento global de bytes em uso pelo pipeline de imagens.
+ *
+ * Cada trabalho (gerar/enviar imagem, pacote, envio múltiplo) reserva uma
+ * estimativa da memória que vai ocupar antes de começar e devolve ao terminar.
+ * Num pico de pedidos, os excedentes esperam (até app.memory.acquire-timeout-ms)
+ * em vez de disputarem o heap e causarem tempestades de GC ou OOM.
+ */
+@Service
+public class MemoryBudget {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryBudget.class);
+
+    private static final int KB = 1024;
+
+    private final Semaphore permitsKb;
+    private final int totalKb;
+    private final long acquireTimeoutMs;
+
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private final AtomicLong peakBytes = new AtomicLong();
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    public MemoryBudget(
+            @Value("${app.memory.budget-bytes:67108864}") long budgetBytes,
+            @Value("${app.memory.acquire-timeout-ms:10000}") long acquireTimeoutMs) {
+        this.totalKb = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetBytes / KB));
+        this.permitsKb = new Semaphore(totalKb, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    /**
+     * Reserva bytes do orçamento, esperando se necessário.
+     * Retorna null se não houver memória disponível dentro do tempo limite.
+     * Pedidos maiores que o orçamento inteiro são limitados a ele (rodam sozinhos).
+     */
+    public Permit acquire(long bytes) {
+        int kb = (int) Math.min(totalKb, Math.max(1, (bytes + KB - 1) / KB));
+        try {
+            if (!permitsKb.tryAcquire(kb)) {
+                long start = System.nanoTime();
+                waits.incrementAndGet();
+                boolean acquired = permitsKb.tryAcquire(kb, acquireTimeoutMs, TimeUnit.MILLISECONDS);
+                long waited = System.nanoTime() - start;
+                totalWaitNanos.addAndGet(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+                if (!acquired) {
+                    rejections.incrementAndGet();
+                    logger.warn("Orçamento de memória esgotado: {} KB pedidos, {} KB livres",
+                            kb, permitsKb.availablePermits());
+                    return null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejections.incrementAndGet();
+            return null;
+        }
+
+        acquisitions.incrementAndGet();
+        long current = inFlightBytes.addAndGet((long) kb * KB);
+        peakBytes.accumulateAndGet(current, Math::max);
+        return new Permit(kb);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long waitCount = waits.get();
+        stats.put("budget_bytes", (long) totalKb * KB);
+        stats.put("in_flight_bytes", inFlightBytes.get());
+        stats.put("peak_bytes", peakBytes.get());
+        stats.put("acquisitions", acquisitions.get());
+        stats.put("waits", waitCount);
+        stats.put("avg_wait_ms", waitCount == 0 ? 0 : totalWaitNanos.get() / waitCount / 1_000_000);
+        stats.put("max_wait_ms", maxWaitNanos.get() / 1_000_000);
+        stats.put("rejections", rejections.get());
+        return stats;
+    }
+
+    /**
+     * Reserva ativa; devolve os bytes ao ser fechada (uma única vez)
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final int kb;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int kb) {
+            this.kb = kb;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                inFlightBytes.addAndGet(-(long) kb * KB);
+                permitsKb.release(kb);
+            }
+        }
+    }
+}
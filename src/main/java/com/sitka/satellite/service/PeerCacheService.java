@@ -0,0 +1,218 @@
+package com.sitka.satellite.service;
+
+import com.sitka.satellite.timing.StageTimer;
+import com.sitka.satellite.util.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache compartilhado entre instâncias (app.peer-cache).
+ *
+ * Cada chave de imagem tem uma instância dona, escolhida por hashing
+ * consistente sobre app.peer-cache.peers. As demais pedem a imagem à dona
+ * (GET /internal/peer-cache/{chave}), que serve do seu armazenamento ou baixa
+ * uma única vez para o cluster. A imagem recebida fica no ImageStore local e é
+ * reaproveitada enquanto fresca (ttl-seconds), sem nova ida à dona.
+ *
+ * O endpoint interno exige app.peer-cache.token; sem token configurado o cache
+ * entre instâncias fica desativado.
+ */
+@Service
+public class PeerCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PeerCacheService.class);
+
+    public static final String PATH = "/internal/peer-cache/";
+    public static final String TOKEN_HEADER = "X-Peer-Token";
+
+    /** Tempo que uma instância com falha fica fora das consultas */
+    private static final long PEER_BACKOFF_MS = 30_000;
+
+    @Autowired
+    private BufferPool bufferPool;
+
+    private final boolean enabled;
+    private final String self;
+    private final String token;
+    private final int timeoutMs;
+    private final long ttlSeconds;
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+    private final Map<String, Long> downUntil = new ConcurrentHashMap<>();
+
+    private final AtomicLong peerHits = new AtomicLong();
+    private final AtomicLong peerFailures = new AtomicLong();
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong ownedLocally = new AtomicLong();
+    private final AtomicLong servedToPeers = new AtomicLong();
+
+    public PeerCacheService(
+            @Value("${app.peer-cache.enabled:false}") boolean enabled,
+            @Value("${app.peer-cache.self:}") String self,
+            @Value("${app.peer-cache.peers:}") List<String> peers,
+            @Value("${app.peer-cache.token:}") String token,
+            @Value("${app.peer-cache.virtual-nodes:128}") int virtualNodes,
+            @Value("${app.peer-cache.timeout-ms:3000}") int timeoutMs,
+            @Value("${app.peer-cache.ttl-seconds:86400}") long ttlSeconds) {
+        this.self = trimSlash(self);
+        this.token = token;
+        this.timeoutMs = timeoutMs;
+        this.ttlSeconds = ttlSeconds;
+
+        List<String> nodes = new ArrayList<>();
+        for (String peer : peers) {
+            String node = trimSlash(peer);
+            if (!node.isEmpty() && !nodes.contains(node)) {
+                nodes.add(node);
+            }
+        }
+        if (!this.self.isEmpty() && !nodes.contains(this.self)) {
+            nodes.add(this.self);
+        }
+
+        this.enabled = enabled && !this.self.isEmpty() && nodes.size() > 1 && !token.isEmpty();
+        if (this.enabled) {
+            for (String node : nodes) {
+                for (int i = 0; i < Math.max(1, virtualNodes); i++) {
+                    ring.put(hash(node + "#" + i), node);
+                }
+            }
+            logger.info("✓ Cache entre instâncias ativo: {} ({} instâncias)", this.self, nodes.size());
+        } else if (enabled) {
+            logger.warn("app.peer-cache.enabled sem self/peers suficientes ou sem token; cache entre instâncias desativado");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    /**
+     * Instância dona da chave; null se for esta
+     */
+    public String ownerOf(String key) {
+        if (!enabled) {
+            return null;
+        }
+        SortedMap<Long, String> tail = ring.tailMap(hash(key));
+        String owner = tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+        if (owner.equals(self)) {
+            ownedLocally.incrementAndGet();
+            return null;
+        }
+        return owner;
+    }
+
+    public void recordLocalHit() {
+        localHits.incrementAndGet();
+    }
+
+    public void recordServedToPeer() {
+        servedToPeers.incrementAndGet();
+    }
+
+    /**
+     * Sem token configurado, nenhum pedido é aceito. Comparação em tempo constante
+     */
+    public boolean isAuthorized(String requestToken) {
+        return !token.isEmpty() && Hashing.secretEquals(token, requestToken);
+    }
+
+    /**
+     * Pede a imagem (PNG) à instância dona; null se indisponível
+     */
+    public byte[] fetchFromOwner(String owner, String key, String endereco) {
+        Long until = downUntil.get(owner);
+        if (until != null && until > System.currentTimeMillis()) {
+            return null;
+        }
+
+        long start = System.currentTimeMillis();
+        try (StageTimer.Stage stage = StageTimer.start("peer").status("error")) {
+            URL url = new URL(owner + PATH + key + "?endereco=" + URLEncoder.encode(endereco, StandardCharsets.UTF_8));
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(timeoutMs);
+            // A dona pode precisar baixar a imagem do Google
+            connection.setReadTimeout(timeoutMs * 5);
+            connection.setRequestProperty(TOKEN_HEADER, token);
+            try {
+                int status = connection.getResponseCode();
+                if (status != HttpURLConnection.HTTP_OK) {
+                    peerFailures.incrementAndGet();
+                    logger.warn("Instância {} respondeu {} para {}", owner, status, key);
+                    return null;
+                }
+                byte[] png;
+                try (InputStream in = connection.getInputStream()) {
+                    png = bufferPool.readAll(in);
+                }
+                stage.bytes(png.length).status("ok");
+                peerHits.incrementAndGet();
+                downUntil.remove(owner);
+                logger.info("✓ Imagem {} obtida da instância {} em {} ms", key, owner,
+                        System.currentTimeMillis() - start);
+                return png;
+            } finally {
+                connection.disconnect();
+            }
+        } catch (Exception e) {
+            peerFailures.incrementAndGet();
+            downUntil.put(owner, System.currentTimeMillis() + PEER_BACKOFF_MS);
+            logger.warn("Instância {} indisponível ({}); ignorada por {} s", owner, e.getMessage(),
+                    PEER_BACKOFF_MS / 1000);
+            return null;
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("self", self);
+        stats.put("peer_hits", peerHits.get());
+        stats.put("peer_failures", peerFailures.get());
+        stats.put("local_hits", localHits.get());
+        stats.put("owned_locally", ownedLocally.get());
+        stats.put("served_to_peers", servedToPeers.get());
+        return stats;
+    }
+
+    private static long hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String trimSlash(String url) {
+        String trimmed = url == null ? "" : url.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
@@ -0,0 +1,303 @@
+package com.sitka.satellite.service;
+
+import com.google.maps.model.LatLng;
+import com.sitka.satellite.imagery.ImageryRequest;
+import com.sitka.satellite.imagery.ImageryResult;
+import com.sitka.satellite.imagery.ImageryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * "Pacote do imóvel": várias vistas do mesmo endereço (zooms e tipos de mapa
+ * de app.pack.views) reunidas numa única folha de contato e enviadas num só
+ * WatiMessageService.sendFile.
+ *
+ * O endereço é geocodificado uma vez por pacote e todas as vistas usam o mesmo
+ * centro (sem geocodificação, as vistas seguem pelo endereço).
+ *
+ * As vistas são buscadas em paralelo e cada uma é desenhada na folha assim que
+ * chega, então o tempo total fica perto da vista mais lenta. Cada pacote tem no
+ * máximo app.pack.max-parallelism vistas em andamento (padrão: uma por vista);
+ * a próxima só é enviada quando uma termina. Assim, no máximo esse número de
+ * vistas decodificadas fica na memória além da folha, e um pacote não ocupa
+ * sozinho o pool compartilhado (app.pack.threads, padrão o dobro do limite
+ * por pacote).
+ */
+@Service
+public class PropertyPackService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PropertyPackService.class);
+
+    private static final int VIEW_SIZE = 600;
+    private static final int LABEL_HEIGHT = 32;
+    private static final int COLUMNS = 3;
+
+    @Autowired
+    private ImageryService imageryService;
+
+    @Autowired
+    private GeocodingService geocodingService;
+
+    @Autowired
+    private WatiMessageService watiMessageService;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    @Autowired
+    private BufferPool bufferPool;
+
+    private final List<View> views = new ArrayList<>();
+
+    /** Vistas em andamento por pacote */
+    private final int parallelism;
+
+    private final ExecutorService executor;
+
+    public PropertyPackService(
+            @Value("${app.pack.views:15:satellite,17:satellite,19:satellite,18:roadmap,18:hybrid}") List<String> views,
+            @Value("${app.pack.max-parallelism:0}") int maxParallelism,
+            @Value("${app.pack.threads:0}") int threads) {
+        for (String view : views) {
+            String[] parts = view.trim().split(":");
+            this.views.add(new View(Integer.parseInt(parts[0].trim()), parts.length > 1 ? parts[1].trim() : "satellite"));
+        }
+        this.parallelism = Math.max(1, maxParallelism > 0 ? Math.min(maxParallelism, this.views.size()) : this.views.size());
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads > 0 ? threads : 2 * parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "property-pack-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gera o pacote do endereço e envia para o telefone
+     */
+    public Map<String, Object> sendPack(String telefone, String endereco) {
+        int rows = (views.size() + COLUMNS - 1) / COLUMNS;
+        int columns = Math.min(COLUMNS, views.size());
+        int width = columns * VIEW_SIZE;
+        int height = rows * (VIEW_SIZE + LABEL_HEIGHT);
+
+        // Folha + as vistas em andamento, decodificadas (int RGB) e codificadas
+        long estimate = 4L * width * height + parallelism * (4L * VIEW_SIZE * VIEW_SIZE + 1024 * 1024);
+        try (MemoryBudget.Permit permit = memoryBudget.acquire(estimate)) {
+            if (permit == null) {
+                Map<String, Object> response = new HashMap<>();
+                response.put("ok", false);
+                response.put("result", "error");
+                response.put("mensagem_imagemdesatelite", "Servidor ocupado, tente novamente em instantes");
+                return response;
+            }
+            BufferedImage sheet = bufferPool.acquireImage(width, height);
+            try {
+                return sendPack(telefone, endereco, sheet);
+            } finally {
+                bufferPool.releaseImage(sheet);
+            }
+        }
+    }
+
+    private Map<String, Object> sendPack(String telefone, String endereco, BufferedImage sheet) {
+        Map<String, Object> response = new HashMap<>();
+        long start = System.currentTimeMillis();
+
+        LatLng center = geocode(endereco);
+        CompletionService<ViewResult> completion = new ExecutorCompletionService<>(executor);
+        int submitted = 0;
+        while (submitted < parallelism) {
+            submit(completion, endereco, center, submitted++);
+        }
+
+        Map<String, Object> vistas = new LinkedHashMap<>();
+        long slowestMs = 0;
+        int ok = 0;
+
+        Graphics2D g = sheet.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 18));
+            g.setColor(Color.DARK_GRAY);
+            g.fillRect(0, 0, sheet.getWidth(), sheet.getHeight());
+
+            for (int i = 0; i < views.size(); i++) {
+                ViewResult result;
+                try {
+                    result = completion.take().get();
+                } catch (Exception e) {
+                    logger.error("Erro ao aguardar vista do pacote", e);
+                    continue;
+                } finally {
+                    if (submitted < views.size()) {
+                        submit(completion, endereco, center, submitted++);
+                    }
+                }
+
+                View view = views.get(result.slot);
+                int x = (result.slot % COLUMNS) * VIEW_SIZE;
+                int y = (result.slot / COLUMNS) * (VIEW_SIZE + LABEL_HEIGHT);
+                slowestMs = Math.max(slowestMs, result.elapsedMs);
+
+                g.setColor(Color.WHITE);
+                g.drawString(view.label(), x + 10, y + LABEL_HEIGHT - 9);
+                if (result.image != null) {
+                    g.drawImage(result.image, x, y + LABEL_HEIGHT, VIEW_SIZE, VIEW_SIZE, null);
+                    ok++;
+                } else {
+                    g.drawString("Imagem indisponível", x + 10, y + LABEL_HEIGHT + VIEW_SIZE / 2);
+                }
+                vistas.put(view.label(), result.image != null ? "ok (" + result.elapsedMs + " ms)" : "erro");
+            }
+        } finally {
+            g.dispose();
+        }
+
+        long fetchMs = System.currentTimeMillis() - start;
+        logger.info("Pacote de {}: {}/{} vistas em {} ms (mais lenta: {} ms)",
+                endereco, ok, views.size(), fetchMs, slowestMs);
+
+        response.put("vistas", vistas);
+        response.put("tempo_total_ms", fetchMs);
+        response.put("vista_mais_lenta_ms", slowestMs);
+
+        if (ok == 0) {
+            response.put("ok", false);
+            response.put("result", "error");
+            response.put("mensagem_imagemdesatelite", "Erro ao gerar as vistas do pacote");
+            return response;
+        }
+
+        File file = null;
+        try {
+            file = File.createTempFile("pacote-", ".jpg");
+            writeJpeg(sheet, file);
+
+            Map<String, Object> wati = watiMessageService.sendFile(telefone, file,
+                    "Pacote de imagens do imóvel: " + endereco);
+            boolean enviado = Boolean.TRUE.equals(wati.get("ok"));
+
+            response.put("ok", enviado);
+            response.put("result", enviado ? "success" : "error");
+            response.put("mensagem_imagemdesatelite", enviado
+                    ? "Pacote de imagens enviado com sucesso!"
+                    : "Erro ao enviar pacote via WATI");
+            response.put("wati_status_code", wati.get("status_code"));
+            return response;
+
+        } catch (Exception e) {
+            logger.error("Erro ao montar/enviar pacote", e);
+            response.put("ok", false);
+            response.put("result", "error");
+            response.put("mensagem_imagemdesatelite", "Erro ao montar pacote: " + e.getMessage());
+            return response;
+        } finally {
+            if (file != null && !file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Centro comum às vistas do pacote; null se não geocodificado
+     */
+    private LatLng geocode(String endereco) {
+        try {
+            return geocodingService.getLatLng(endereco);
+        } catch (Exception e) {
+            logger.warn("Erro ao geocodificar {} para o pacote: {}", endereco, e.getMessage());
+            return null;
+        }
+    }
+
+    private void submit(CompletionService<ViewResult> completion, String endereco, LatLng center, int slot) {
+        completion.submit(() -> fetchView(endereco, center, slot));
+    }
+
+    private ViewResult fetchView(String endereco, LatLng center, int slot) {
+        View view = views.get(slot);
+        long start = System.currentTimeMillis();
+        BufferedImage image = null;
+        try {
+            ImageryResult result = imageryService.fetch(
+                    new ImageryRequest(endereco, center, view.zoom, VIEW_SIZE, VIEW_SIZE, view.mapType, true));
+            if (result != null) {
+                image = ImageIO.read(new ByteArrayInputStream(result.getBytes()));
+            }
+        } catch (Exception e) {
+            logger.warn("Vista {} de {} falhou: {}", view.label(), endereco, e.getMessage());
+        }
+        return new ViewResult(slot, image, System.currentTimeMillis() - start);
+    }
+
+    private static void writeJpeg(BufferedImage image, File file) throws Exception {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.85f);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static final class View {
+        final int zoom;
+        final String mapType;
+
+        View(int zoom, String mapType) {
+            this.zoom = zoom;
+            this.mapType = mapType;
+        }
+
+        String label() {
+            return mapType + " z" + zoom;
+        }
+    }
+
+    private static final class ViewResult {
+        final int slot;
+        final BufferedImage image;
+        final long elapsedMs;
+
+        ViewResult(int slot, BufferedImage image, long elapsedMs) {
+            this.slot = slot;
+            this.image = image;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+}
@@ -2,6 +2,13 @@ package com.sitka.satellite.service;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.maps.model.LatLng;
+import com.sitka.satellite.geo.Boundary;
+import com.sitka.satellite.geo.BoundaryOverlay;
+import com.sitka.satellite.imagery.ImageryRequest;
+import com.sitka.satellite.imagery.ImageryResult;
+import com.sitka.satellite.imagery.ImageryService;
+import com.sitka.satellite.timing.StageTimer;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
@@ -11,30 +18,34 @@ import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.net.URL;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
+@Lazy(false)
 public class SatelliteImageService {
 
     private static final Logger logger = LoggerFactory.getLogger(SatelliteImageService.class);
 
-    @Value("${app.google.api-key}")
-    private String googleApiKey;
-
     @Value("${app.wati.base-url}")
     private String watiBaseUrl;
 
@@ -47,40 +58,298 @@ public class SatelliteImageService {
     @Value("${app.temp-dir}")
     private String tempDir;
 
+    @Value("${app.spatial-reuse.fetch-size:640}")
+    private int spatialReuseFetchSize;
+
+    @Value("${app.stale-while-revalidate.enabled:false}")
+    private boolean staleWhileRevalidate;
+
+    @Value("${app.stale-while-revalidate.fresh-ttl-seconds:86400}")
+    private long freshTtlSeconds;
+
+    @Value("${app.stale-while-revalidate.max-stale-seconds:2592000}")
+    private long maxStaleSeconds;
+
+    @Autowired
+    private GeocodingService geocodingService;
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private ImageryService imageryService;
+
+    @Autowired
+    private BufferPool bufferPool;
+
+    // Recursos opcionais (índice espacial, SWR, cache entre instâncias): proxies
+    // @Lazy, para que o @Lazy(false) desta classe não os crie na inicialização
+    @Autowired
+    @Lazy
+    private SpatialImageIndex spatialImageIndex;
+
+    @Autowired
+    @Lazy
+    private ImageRefreshScheduler imageRefreshScheduler;
+
+    @Autowired
+    @Lazy
+    private PeerCacheService peerCacheService;
+
+    private static final int ZOOM = 18;
+    private static final int IMAGE_SIZE = 600;
+    /** Zoom mínimo ao enquadrar contornos grandes */
+    private static final int MIN_BOUNDARY_ZOOM = 15;
+
+    /**
+     * Estimativa de memória de um pedido (para o MemoryBudget): imagem baixada
+     * e decodificada (até 640×640), vista final 600×600 em int RGB, PNG
+     * codificado e a cópia do multipart
+     */
+    public static final long ESTIMATED_PIPELINE_BYTES = 6L * 1024 * 1024;
+
+    /**
+     * Imagens recém-obtidas da origem e ainda não armazenadas: ao serem gravadas
+     * no ImageStore, a validação da chave é renovada (só depois do put, com os
+     * bytes novos). Referências fracas, para imagens nunca armazenadas não vazarem.
+     */
+    private final Set<BufferedImage> fetchedFromOrigin =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    /** Downloads em andamento para outras instâncias (um por chave) */
+    private final Map<String, CompletableFuture<ImageStore.StoredImage>> peerDownloads = new ConcurrentHashMap<>();
+
     public SatelliteImageService() {
         // Construtor vazio
     }
 
     /**
      * Gera imagem de satélite usando Google Maps API
+     *
+     * Com app.stale-while-revalidate.enabled, a imagem já armazenada do endereço
+     * é usada enquanto fresca; vencida (até max-stale-seconds) ela ainda é
+     * servida na hora e a atualização fica agendada no ImageRefreshScheduler.
      */
     public BufferedImage generateSatelliteImage(String endereco) {
+        log("========================================================");
+        log("GERANDO IMAGEM DE SATÉLITE");
+        log("Endereço: " + endereco);
+        log("========================================================");
+
+        if (staleWhileRevalidate) {
+            BufferedImage cached = fromStore(endereco);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (peerCacheService.isEnabled()) {
+            BufferedImage shared = fromPeers(endereco);
+            if (shared != null) {
+                return shared;
+            }
+        }
+        return fetchSatelliteImage(endereco);
+    }
+
+    /**
+     * Gera a imagem com o contorno do imóvel desenhado por cima (etapa "overlay").
+     *
+     * O zoom é o maior (até 18) em que o contorno inteiro cabe na imagem; se o
+     * endereço não for geocodificado (ou a geocodificação falhar), a vista é
+     * centrada no próprio contorno.
+     */
+    public BufferedImage generateSatelliteImage(String endereco, Boundary contorno) {
+        if (contorno == null) {
+            return generateSatelliteImage(endereco);
+        }
+        log("Gerando imagem com contorno para: " + endereco);
         try {
-            log("========================================================");
-            log("GERANDO IMAGEM DE SATÉLITE");
-            log("Endereço: " + endereco);
-            log("========================================================");
+            LatLng center = null;
+            try {
+                center = geocodingService.getLatLng(endereco);
+            } catch (Exception e) {
+                log("Geocodificação falhou (" + e.getMessage() + "), usando o centro do contorno");
+            }
+            if (center == null) {
+                center = contorno.center();
+            }
+            int zoom = contorno.fitZoom(center, IMAGE_SIZE, IMAGE_SIZE, MIN_BOUNDARY_ZOOM, ZOOM);
+
+            ImageryResult result = imageryService.fetch(
+                    new ImageryRequest(endereco, center, zoom, IMAGE_SIZE, IMAGE_SIZE, "satellite", true));
+            if (result == null) {
+                log("ERRO: Nenhum provedor de imagens atendeu o pedido");
+                return null;
+            }
+            BufferedImage image = decode(result.getBytes());
+            if (image == null) {
+                log("ERRO: Imagem retornou null");
+                return null;
+            }
+
+            try (StageTimer.Stage stage = StageTimer.start("overlay")) {
+                image = BoundaryOverlay.draw(image, contorno, center, zoom);
+            }
+            log("✓ Imagem com contorno gerada (zoom " + zoom + ")");
+            return image;
+
+        } catch (Exception e) {
+            log("ERRO ao gerar imagem com contorno: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Imagem do cache entre instâncias: a cópia local (desta instância como dona
+     * ou recebida antes da dona) enquanto fresca, senão a da instância dona;
+     * null se esta instância for a dona sem cópia fresca ou a dona falhar
+     */
+    private BufferedImage fromPeers(String endereco) {
+        String key = ImageStore.keyFor(endereco);
+        try {
+            ImageStore.StoredImage local = imageStore.get(key);
+            if (local != null && isFresh(local, peerCacheService.getTtlSeconds())) {
+                BufferedImage image = readStored(local.getPath());
+                if (image != null) {
+                    peerCacheService.recordLocalHit();
+                    log("✓ Imagem servida da cópia local do cache entre instâncias");
+                    return image;
+                }
+            }
+
+            String owner = peerCacheService.ownerOf(key);
+            if (owner == null) {
+                return null;
+            }
+            byte[] png = peerCacheService.fetchFromOwner(owner, key, endereco);
+            if (png == null) {
+                return null;
+            }
+            BufferedImage image = decode(png);
+            if (image != null) {
+                // A dona confirmou o conteúdo: a cópia local conta como validada ao ser armazenada
+                fetchedFromOrigin.add(image);
+            }
+            return image;
+        } catch (Exception e) {
+            log("ERRO ao usar cache entre instâncias: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Imagem do endereço para outra instância (esta é a dona da chave):
+     * do armazenamento se ainda fresca, senão baixada e armazenada agora.
+     * Pedidos simultâneos da mesma chave esperam o mesmo download.
+     */
+    public ImageStore.StoredImage storedImageForPeer(String endereco) {
+        String key = ImageStore.keyFor(endereco);
+        ImageStore.StoredImage stored = imageStore.get(key);
+        if (stored != null && isFresh(stored, peerCacheService.getTtlSeconds())) {
+            return stored;
+        }
+
+        CompletableFuture<ImageStore.StoredImage> download = new CompletableFuture<>();
+        CompletableFuture<ImageStore.StoredImage> inFlight = peerDownloads.putIfAbsent(key, download);
+        if (inFlight != null) {
+            log("Aguardando download já em andamento da chave " + key);
+            return inFlight.join();
+        }
+        try {
+            BufferedImage image = fetchSatelliteImage(endereco);
+            stored = image != null ? storeImage(image, endereco) : null;
+            download.complete(stored);
+            return stored;
+        } catch (RuntimeException e) {
+            download.complete(null);
+            throw e;
+        } finally {
+            peerDownloads.remove(key, download);
+        }
+    }
+
+    private static boolean isFresh(ImageStore.StoredImage stored, long ttlSeconds) {
+        return System.currentTimeMillis() - stored.getValidatedAt() <= ttlSeconds * 1000;
+    }
+
+    /**
+     * Imagem armazenada do endereço se fresca ou vencida há pouco; null caso contrário
+     */
+    private BufferedImage fromStore(String endereco) {
+        String key = ImageStore.keyFor(endereco);
+        imageRefreshScheduler.recordAccess(key);
+
+        ImageStore.StoredImage stored = imageStore.get(key);
+        if (stored == null) {
+            return null;
+        }
+        long ageSeconds = (System.currentTimeMillis() - stored.getValidatedAt()) / 1000;
+        if (ageSeconds > freshTtlSeconds + maxStaleSeconds) {
+            log("Imagem armazenada vencida há muito tempo (" + ageSeconds + " s), baixando novamente");
+            return null;
+        }
 
-            if (googleApiKey == null || googleApiKey.isEmpty()) {
-                log("ERRO: GOOGLE_API_KEY não configurada!");
+        try {
+            BufferedImage image = readStored(stored.getPath());
+            if (image == null) {
                 return null;
             }
+            if (ageSeconds > freshTtlSeconds) {
+                log("✓ Imagem vencida servida do armazenamento (" + ageSeconds + " s); atualização agendada");
+                imageRefreshScheduler.schedule(key, () -> refresh(endereco, stored.getContentHash()));
+            } else {
+                log("✓ Imagem fresca servida do armazenamento (" + ageSeconds + " s)");
+            }
+            return image;
+        } catch (IOException e) {
+            log("ERRO ao ler imagem armazenada: " + e.getMessage());
+            return null;
+        }
+    }
 
-            // Codificar endereço para URL
-            String encodedEndereco = URLEncoder.encode(endereco, StandardCharsets.UTF_8);
-            
-            String mapUrl = "https://maps.googleapis.com/maps/api/staticmap?" +
-                    "center=" + encodedEndereco + "&" +
-                    "zoom=18&" +
-                    "size=600x600&" +
-                    "maptype=satellite&" +
-                    "markers=color:red%7C" + encodedEndereco + "&" +
-                    "key=" + googleApiKey;
+    /**
+     * Baixa novamente a imagem do endereço; retorna true se o conteúdo mudou.
+     * Conteúdo idêntico só renova a validação (o arquivo não é regravado).
+     */
+    private boolean refresh(String endereco, String previousHash) throws IOException {
+        BufferedImage image = fetchSatelliteImage(endereco);
+        if (image == null) {
+            throw new IOException("Nenhum provedor atendeu a atualização");
+        }
+        ImageStore.StoredImage stored = storeImage(image, endereco);
+        if (stored == null) {
+            throw new IOException("Erro ao armazenar imagem atualizada");
+        }
+        boolean changed = !stored.getContentHash().equals(previousHash);
+        log(changed ? "✓ Imagem atualizada com novo conteúdo: " + endereco
+                : "Imagem revalidada sem mudanças: " + endereco);
+        return changed;
+    }
 
-            log("Baixando imagem de: " + mapUrl);
+    /**
+     * Busca a imagem nos provedores (ou no índice espacial), sem usar o armazenamento
+     */
+    private BufferedImage fetchSatelliteImage(String endereco) {
+        try {
+            if (spatialImageIndex.isEnabled()) {
+                BufferedImage reused = generateWithSpatialReuse(endereco);
+                if (reused != null) {
+                    fetchedFromOrigin.add(reused);
+                    return reused;
+                }
+                log("Reaproveitamento espacial indisponível, usando busca por endereço");
+            }
 
-            URL url = new URL(mapUrl);
-            BufferedImage image = ImageIO.read(url);
+            ImageryResult result = imageryService.fetch(
+                    new ImageryRequest(endereco, null, ZOOM, IMAGE_SIZE, IMAGE_SIZE, "satellite", true));
+
+            if (result == null) {
+                log("ERRO: Nenhum provedor de imagens atendeu o pedido");
+                return null;
+            }
+
+            BufferedImage image = decode(result.getBytes());
 
             if (image == null) {
                 log("ERRO: Imagem retornou null");
@@ -88,6 +357,7 @@ public class SatelliteImageService {
             }
 
             log("✓ Imagem gerada com sucesso! Dimensões: " + image.getWidth() + "x" + image.getHeight());
+            fetchedFromOrigin.add(image);
             return image;
 
         } catch (Exception e) {
@@ -97,6 +367,126 @@ public class SatelliteImageService {
         }
     }
 
+    /**
+     * Gera a imagem pelo centro geocodificado, reaproveitando imagens vizinhas já baixadas.
+     *
+     * Baixa uma área um pouco maior (app.spatial-reuse.fetch-size) sem marcador,
+     * indexa os bytes originais e desenha o marcador localmente, para que pedidos
+     * vizinhos possam ser recortados da mesma imagem.
+     */
+    private BufferedImage generateWithSpatialReuse(String endereco) {
+        try {
+            LatLng center = geocodingService.getLatLng(endereco);
+            if (center == null) {
+                log("Endereço não geocodificado: " + endereco);
+                return null;
+            }
+
+            BufferedImage reused = spatialImageIndex.find(center.lat, center.lng, ZOOM, IMAGE_SIZE, IMAGE_SIZE);
+            if (reused != null) {
+                log("✓ Imagem reaproveitada do índice espacial para " + center);
+                return reused;
+            }
+
+            int fetchSize = Math.max(IMAGE_SIZE, Math.min(640, spatialReuseFetchSize));
+            log("Baixando imagem (sem marcador) para " + center);
+
+            ImageryResult result = imageryService.fetch(
+                    new ImageryRequest(endereco, center, ZOOM, fetchSize, fetchSize, "satellite", false));
+            if (result == null) {
+                return null;
+            }
+
+            BufferedImage source = decode(result.getBytes());
+            if (source == null) {
+                return null;
+            }
+            SpatialImageIndex.Entry entry = spatialImageIndex.put(
+                    center.lat, center.lng, ZOOM, fetchSize, fetchSize, result.getBytes());
+            BufferedImage image = SpatialImageIndex.crop(source, entry, center.lat, center.lng, IMAGE_SIZE, IMAGE_SIZE);
+
+            log("✓ Imagem gerada com sucesso! Dimensões: " + image.getWidth() + "x" + image.getHeight());
+            return image;
+
+        } catch (Exception e) {
+            log("ERRO no reaproveitamento espacial: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Decodifica a imagem baixada (etapa "decode")
+     */
+    private static BufferedImage decode(byte[] bytes) throws IOException {
+        try (StageTimer.Stage stage = StageTimer.start("decode").bytes(bytes.length)) {
+            return ImageIO.read(new ByteArrayInputStream(bytes));
+        }
+    }
+
+    /**
+     * Lê uma imagem do ImageStore (etapa "store-read")
+     */
+    private static BufferedImage readStored(Path path) throws IOException {
+        try (StageTimer.Stage stage = StageTimer.start("store-read").bytes(Files.size(path))) {
+            return ImageIO.read(path.toFile());
+        }
+    }
+
+    /**
+     * Codifica imagem em PNG na memória (sem passar pelo disco)
+     */
+    public byte[] encodePng(BufferedImage image) {
+        BufferPool.ReusableByteArrayOutputStream out = bufferPool.acquireStream();
+        try (StageTimer.Stage stage = StageTimer.start("encode")) {
+            ImageIO.write(image, "png", out);
+            stage.bytes(out.size());
+            return out.toByteArray();
+        } catch (Exception e) {
+            log("ERRO ao codificar imagem: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        } finally {
+            bufferPool.releaseStream(out);
+        }
+    }
+
+    /**
+     * Codifica e guarda a imagem no ImageStore (servida em /analise-imagemdesatelite/imagem)
+     */
+    public ImageStore.StoredImage storeImage(BufferedImage image, String endereco) {
+        try {
+            byte[] png = encodePng(image);
+            if (png == null) {
+                return null;
+            }
+            ImageStore.StoredImage stored = storeEncoded(image, endereco, png);
+            log("✓ Imagem armazenada em: " + stored.getPath());
+            log("Tamanho: " + (stored.getSize() / 1024) + " KB");
+            return stored;
+        } catch (Exception e) {
+            log("ERRO ao armazenar imagem: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Guarda o PNG já codificado da imagem. Se a imagem acabou de vir da origem,
+     * a validação da chave é renovada depois do put (conteúdo idêntico ao
+     * armazenado não é regravado, mas conta como revalidado).
+     */
+    public ImageStore.StoredImage storeEncoded(BufferedImage image, String endereco, byte[] png) throws Exception {
+        String key = ImageStore.keyFor(endereco);
+        ImageStore.StoredImage stored;
+        try (StageTimer.Stage stage = StageTimer.start("store").bytes(png.length)) {
+            stored = imageStore.put(key, png);
+        }
+        if (fetchedFromOrigin.remove(image)) {
+            imageStore.markValidated(key);
+        }
+        return stored;
+    }
+
     /**
      * Salva imagem em arquivo
      */
@@ -190,10 +580,15 @@ public class SatelliteImageService {
 
             log("Enviando requisição POST...");
 
-            CloseableHttpResponse response = httpClient.execute(httpPost);
-            int statusCode = response.getStatusLine().getStatusCode();
-
-            String responseBody = EntityUtils.toString(response.getEntity());
+            CloseableHttpResponse response;
+            int statusCode;
+            String responseBody;
+            try (StageTimer.Stage stage = StageTimer.start("wati").bytes(imageFile.length())) {
+                response = httpClient.execute(httpPost);
+                statusCode = response.getStatusLine().getStatusCode();
+                responseBody = EntityUtils.toString(response.getEntity());
+                stage.status(String.valueOf(statusCode));
+            }
             log("Status WATI: " + statusCode);
             log("Resposta WATI: " + responseBody);
 
@@ -0,0 +1,277 @@
+package com.sitka.satellite.service;
+
+import com.sitka.satellite.geo.MapMarker;
+import com.sitka.satellite.geo.WebMercator;
+import com.sitka.satellite.timing.StageTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Índice espacial das imagens de satélite já baixadas (sem marcador).
+ *
+ * As imagens são indexadas por uma grade sobre as coordenadas de mundo
+ * Web-Mercator do centro, por zoom. Um pedido cuja vista cabe inteira numa
+ * imagem maior já baixada no mesmo zoom (a margem de fetch-size além dos
+ * 600 px: 20 px, cerca de 11 m no zoom 18 usado pelo serviço, com 640, em
+ * São Paulo) é atendido recortando essa imagem e desenhando o marcador
+ * localmente, sem chamar o Static Maps.
+ * Com app.spatial-reuse.max-distance-meters > 0, imagens mais distantes
+ * também servem, desde que o ponto pedido fique dentro delas com folga para o
+ * marcador; o recorte é deslocado para dentro e o marcador sai do centro.
+ *
+ * Os bytes ficam no ImageStore (putBlob); a entrada guarda só o hash e
+ * devolve a referência quando sai do índice.
+ */
+@Service
+public class SpatialImageIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpatialImageIndex.class);
+
+    /** Lado de cada célula da grade, em pixels de mundo */
+    private static final int CELL_SIZE = 1024;
+
+    private final ImageStore imageStore;
+    private final boolean enabled;
+    private final double maxDistanceMeters;
+    private final int maxEntries;
+
+    /** Célula (zoom, x, y) → imagens cujo centro cai nela */
+    private final Map<Long, List<Entry>> grid = new HashMap<>();
+
+    /** Todas as imagens em ordem de acesso, para descartar as menos usadas */
+    private final LinkedHashMap<Entry, Boolean> lru = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public SpatialImageIndex(
+            ImageStore imageStore,
+            @Value("${app.spatial-reuse.enabled:false}") boolean enabled,
+            @Value("${app.spatial-reuse.max-distance-meters:0}") double maxDistanceMeters,
+            @Value("${app.spatial-reuse.max-entries:64}") int maxEntries) {
+        this.imageStore = imageStore;
+        this.enabled = enabled;
+        this.maxDistanceMeters = maxDistanceMeters;
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Registra uma imagem baixada (bytes originais, sem marcador) centrada em lat/lng
+     */
+    Entry put(double lat, double lng, int zoom, int width, int height, byte[] encoded) throws Exception {
+        Entry entry = new Entry(lat, lng, zoom, width, height, imageStore.putBlob(encoded));
+        List<Entry> evicted = add(entry);
+        for (Entry old : evicted) {
+            imageStore.releaseBlob(old.contentHash);
+        }
+        return entry;
+    }
+
+    /**
+     * Indexa a entrada e devolve as que saíram pelo limite de max-entries
+     */
+    private synchronized List<Entry> add(Entry entry) {
+        List<Entry> evictedEntries = new ArrayList<>();
+        grid.computeIfAbsent(cellKey(entry.zoom, entry.worldX, entry.worldY), k -> new ArrayList<>()).add(entry);
+        lru.put(entry, Boolean.TRUE);
+
+        Iterator<Entry> oldest = lru.keySet().iterator();
+        while (lru.size() > maxEntries && oldest.hasNext()) {
+            Entry evicted = oldest.next();
+            oldest.remove();
+            evictedEntries.add(evicted);
+            long key = cellKey(evicted.zoom, evicted.worldX, evicted.worldY);
+            List<Entry> cell = grid.get(key);
+            if (cell != null) {
+                cell.remove(evicted);
+                if (cell.isEmpty()) {
+                    grid.remove(key);
+                }
+            }
+        }
+        return evictedEntries;
+    }
+
+    /**
+     * Tenta montar a vista pedida a partir de uma imagem já indexada.
+     * Retorna null quando nenhuma imagem próxima serve.
+     */
+    public BufferedImage find(double lat, double lng, int zoom, int width, int height) {
+        Entry best = lookup(lat, lng, zoom, width, height);
+        if (best == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try {
+            BufferedImage image = render(best, lat, lng, width, height);
+            hits.incrementAndGet();
+            return image;
+        } catch (Exception e) {
+            logger.error("Erro ao reaproveitar imagem do índice espacial", e);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Lê a imagem da entrada no ImageStore (etapa "decode") e monta a vista
+     */
+    BufferedImage render(Entry entry, double lat, double lng, int width, int height) throws Exception {
+        Path path = imageStore.blobPath(entry.contentHash);
+        BufferedImage source;
+        try (StageTimer.Stage stage = StageTimer.start("decode").bytes(Files.size(path))) {
+            source = ImageIO.read(path.toFile());
+        }
+        if (source == null) {
+            throw new IllegalStateException("Imagem indexada ilegível");
+        }
+        return crop(source, entry, lat, lng, width, height);
+    }
+
+    /**
+     * Recorta a vista (width x height) centrada em lat/lng da imagem já
+     * decodificada da entrada e desenha o marcador. Se a vista passar da borda
+     * da imagem, o recorte é deslocado para dentro e o marcador continua no
+     * ponto correto.
+     */
+    static BufferedImage crop(BufferedImage source, Entry entry, double lat, double lng, int width, int height) {
+        double px = source.getWidth() / 2d + (WebMercator.worldX(lng, entry.zoom) - entry.worldX);
+        double py = source.getHeight() / 2d + (WebMercator.worldY(lat, entry.zoom) - entry.worldY);
+
+        int cropWidth = Math.min(width, source.getWidth());
+        int cropHeight = Math.min(height, source.getHeight());
+        int left = clamp((int) Math.round(px - cropWidth / 2d), 0, source.getWidth() - cropWidth);
+        int top = clamp((int) Math.round(py - cropHeight / 2d), 0, source.getHeight() - cropHeight);
+
+        BufferedImage view = new BufferedImage(cropWidth, cropHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = view.createGraphics();
+        try {
+            g.drawImage(source, -left, -top, null);
+        } finally {
+            g.dispose();
+        }
+
+        MapMarker.draw(view, px - left, py - top);
+        return view;
+    }
+
+    /**
+     * Localiza a melhor imagem: primeiro as que contêm a vista inteira,
+     * depois (se max-distance-meters > 0) a mais próxima dentro dessa distância
+     * que contenha o ponto pedido a pelo menos MapMarker.EXTENT px da borda
+     */
+    synchronized Entry lookup(double lat, double lng, int zoom, int width, int height) {
+        if (!enabled || lru.isEmpty()) {
+            return null;
+        }
+
+        double worldX = WebMercator.worldX(lng, zoom);
+        double worldY = WebMercator.worldY(lat, zoom);
+        double maxDistancePx = maxDistanceMeters / WebMercator.metersPerPixel(lat, zoom);
+        double radius = Math.max(maxDistancePx, Math.max(width, height));
+
+        long minCellX = (long) Math.floor((worldX - radius) / CELL_SIZE);
+        long maxCellX = (long) Math.floor((worldX + radius) / CELL_SIZE);
+        long minCellY = (long) Math.floor((worldY - radius) / CELL_SIZE);
+        long maxCellY = (long) Math.floor((worldY + radius) / CELL_SIZE);
+
+        Entry containing = null;
+        Entry nearest = null;
+        double nearestDistance = Double.MAX_VALUE;
+
+        for (long cx = minCellX; cx <= maxCellX; cx++) {
+            for (long cy = minCellY; cy <= maxCellY; cy++) {
+                List<Entry> cell = grid.get(cellKey(zoom, cx, cy));
+                if (cell == null) {
+                    continue;
+                }
+                for (Entry entry : cell) {
+                    double dx = Math.abs(worldX - entry.worldX);
+                    double dy = Math.abs(worldY - entry.worldY);
+                    if (dx <= (entry.width - width) / 2d && dy <= (entry.height - height) / 2d) {
+                        containing = entry;
+                    }
+                    if (maxDistanceMeters <= 0
+                            || dx >= entry.width / 2d - MapMarker.EXTENT
+                            || dy >= entry.height / 2d - MapMarker.EXTENT) {
+                        continue;
+                    }
+                    double distance = WebMercator.distanceMeters(lat, lng, entry.lat, entry.lng);
+                    if (distance <= maxDistanceMeters && distance < nearestDistance) {
+                        nearest = entry;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+        }
+
+        Entry best = containing != null ? containing : nearest;
+        if (best != null) {
+            // Marca como usada recentemente
+            lru.get(best);
+        }
+        return best;
+    }
+
+    private static long cellKey(int zoom, double worldX, double worldY) {
+        return cellKey(zoom, (long) Math.floor(worldX / CELL_SIZE), (long) Math.floor(worldY / CELL_SIZE));
+    }
+
+    private static long cellKey(int zoom, long cellX, long cellY) {
+        // zoom ≤ 22 e células de 1024 px: x e y cabem em 24 bits cada
+        return ((long) zoom << 48) | ((cellX & 0xFFFFFF) << 24) | (cellY & 0xFFFFFF);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    static final class Entry {
+        final double lat;
+        final double lng;
+        final int zoom;
+        final int width;
+        final int height;
+        final double worldX;
+        final double worldY;
+        final String contentHash;
+
+        Entry(double lat, double lng, int zoom, int width, int height, String contentHash) {
+            this.lat = lat;
+            this.lng = lng;
+            this.zoom = zoom;
+            this.width = width;
+            this.height = height;
+            this.worldX = WebMercator.worldX(lng, zoom);
+            this.worldY = WebMercator.worldY(lat, zoom);
+            this.contentHash = contentHash;
+        }
+    }
+}
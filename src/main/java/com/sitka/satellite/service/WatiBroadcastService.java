@@ -0,0 +1,379 @@
+package com.sitka.satellite.service;
+
+import com.sitka.satellite.timing.StageTimer;
+import com.sitka.satellite.util.PhoneNumbers;
+import org.apache.http.Header;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.HttpHostConnectException;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Envio de mensagens com template para muitos destinatários (campanhas).
+ *
+ * Os destinatários são processados em blocos de app.wati.broadcast.chunk-size;
+ * dentro do bloco os envios rodam em paralelo (max-concurrency) sobre conexões
+ * HTTP reaproveitadas, limitados a rate-per-second no total.
+ *
+ * O envio de template não é idempotente: só é repetido quando é certo que o
+ * WATI não recebeu a mensagem (falha ao conectar) ou a recusou sem processar
+ * (429/503), com espera crescente. Um Retry-After nessas respostas pausa todos
+ * os envios da campanha pelo tempo pedido (até MAX_RETRY_AFTER_MS). Timeouts de
+ * leitura e outros 5xx contam como falha, sem reenviar, para não duplicar.
+ */
+@Service
+public class WatiBroadcastService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WatiBroadcastService.class);
+
+    private static final int MAX_ERROR_LENGTH = 300;
+
+    /** Maior pausa aceita de um Retry-After */
+    static final long MAX_RETRY_AFTER_MS = 60_000;
+
+    @Autowired
+    private WatiMessageService watiMessageService;
+
+    private final int chunkSize;
+    private final int maxRetries;
+
+    private final RateLimiter rateLimiter;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final ExecutorService executor;
+
+    public WatiBroadcastService(
+            @Value("${app.wati.broadcast.max-concurrency:8}") int maxConcurrency,
+            @Value("${app.wati.broadcast.rate-per-second:20}") double ratePerSecond,
+            @Value("${app.wati.broadcast.chunk-size:100}") int chunkSize,
+            @Value("${app.wati.broadcast.max-retries:2}") int maxRetries,
+            @Value("${app.wati.broadcast.timeout-ms:15000}") int timeoutMs) {
+        int concurrency = Math.max(1, maxConcurrency);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.rateLimiter = new RateLimiter(ratePerSecond);
+
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(concurrency);
+        connectionManager.setDefaultMaxPerRoute(concurrency);
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(timeoutMs)
+                        .setConnectionRequestTimeout(timeoutMs)
+                        .setSocketTimeout(timeoutMs)
+                        .build())
+                .build();
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "wati-broadcast-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Destinatário da campanha; parameters sobrescreve os parâmetros comuns
+     */
+    public static final class Recipient {
+        private final String phoneNumber;
+        private final Map<String, String> parameters;
+
+        public Recipient(String phoneNumber, Map<String, String> parameters) {
+            this.phoneNumber = phoneNumber;
+            this.parameters = parameters;
+        }
+    }
+
+    /**
+     * Envia o template para todos os destinatários. Cada resultado individual
+     * ("tipo": "resultado") e o progresso ao fim de cada bloco ("tipo": "progresso")
+     * são entregues ao listener, sempre na thread que chamou este método.
+     *
+     * @return resumo da campanha
+     */
+    public Map<String, Object> broadcast(String templateName, Map<String, String> commonParameters,
+                                         List<Recipient> recipients, Consumer<Map<String, Object>> listener) {
+        long start = System.currentTimeMillis();
+
+        // Telefones repetidos (com ou sem máscara) recebem uma mensagem só
+        Map<String, Map<String, String>> targets = new LinkedHashMap<>();
+        PhoneNumbers.unique(recipients, recipient -> recipient.phoneNumber).forEach((phone, recipient) -> {
+            Map<String, String> parameters = new HashMap<>();
+            if (commonParameters != null) {
+                parameters.putAll(commonParameters);
+            }
+            if (recipient.parameters != null) {
+                parameters.putAll(recipient.parameters);
+            }
+            targets.put(phone, parameters);
+        });
+
+        logger.info("Broadcast do template {}: {} destinatários ({} recebidos)",
+                templateName, targets.size(), recipients.size());
+
+        List<String> phones = new ArrayList<>(targets.keySet());
+        Set<String> failed = new LinkedHashSet<>();
+        int sent = 0;
+
+        for (int from = 0; from < phones.size(); from += chunkSize) {
+            List<String> chunk = phones.subList(from, Math.min(phones.size(), from + chunkSize));
+            CompletionService<Map<String, Object>> completion = new ExecutorCompletionService<>(executor);
+            Map<Future<Map<String, Object>>, String> submitted = new HashMap<>();
+            for (String phone : chunk) {
+                submitted.put(completion.submit(() -> sendOne(phone, templateName, targets.get(phone))), phone);
+            }
+
+            for (int i = 0; i < chunk.size(); i++) {
+                Map<String, Object> result;
+                Future<Map<String, Object>> future = null;
+                try {
+                    future = completion.take();
+                    result = future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    // Envios ainda na fila ou em andamento deste bloco não devem continuar sozinhos
+                    submitted.keySet().forEach(pending -> pending.cancel(true));
+                    logger.warn("Broadcast interrompido após {} envios", sent + failed.size());
+                    return summary(templateName, phones.size(), sent, failed, start, true);
+                } catch (ExecutionException e) {
+                    String phone = submitted.get(future);
+                    logger.error("Erro inesperado no envio para " + phone, e.getCause());
+                    result = failure(phone, 0, 0, String.valueOf(e.getCause()));
+                }
+                if (Boolean.TRUE.equals(result.get("ok"))) {
+                    sent++;
+                } else {
+                    failed.add((String) result.get("phoneNumber"));
+                }
+                listener.accept(result);
+            }
+
+            Map<String, Object> progress = new LinkedHashMap<>();
+            progress.put("tipo", "progresso");
+            progress.put("processados", sent + failed.size());
+            progress.put("total", phones.size());
+            progress.put("enviados", sent);
+            progress.put("falhas", failed.size());
+            progress.put("tempo_ms", System.currentTimeMillis() - start);
+            listener.accept(progress);
+        }
+
+        Map<String, Object> summary = summary(templateName, phones.size(), sent, failed, start, false);
+        logger.info("Broadcast do template {} concluído: {}/{} enviados em {} ms",
+                templateName, sent, phones.size(), summary.get("tempo_ms"));
+        return summary;
+    }
+
+    private Map<String, Object> sendOne(String phone, String templateName, Map<String, String> parameters) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("tipo", "resultado");
+        result.put("phoneNumber", phone);
+
+        String lastError = null;
+        int statusCode = 0;
+        int attempt = 0;
+        while (attempt <= maxRetries) {
+            attempt++;
+            try {
+                rateLimiter.acquire();
+                HttpPost post = new HttpPost(watiMessageService.templateUrl());
+                post.setHeader("Authorization", "Bearer " + watiMessageService.bearerToken());
+                post.setHeader("Content-Type", "application/json");
+                post.setEntity(new StringEntity(
+                        watiMessageService.templatePayload(phone, templateName, parameters).toString(), "UTF-8"));
+
+                String body;
+                String retryAfter;
+                try (StageTimer.Stage stage = StageTimer.start("wati");
+                     CloseableHttpResponse response = httpClient.execute(post)) {
+                    statusCode = response.getStatusLine().getStatusCode();
+                    Header header = response.getFirstHeader("Retry-After");
+                    retryAfter = header != null ? header.getValue() : null;
+                    // Consumir o corpo devolve a conexão ao pool
+                    body = EntityUtils.toString(response.getEntity());
+                    stage.status(String.valueOf(statusCode));
+                }
+
+                if (statusCode >= 200 && statusCode < 300) {
+                    result.put("ok", true);
+                    result.put("status_code", statusCode);
+                    result.put("tentativas", attempt);
+                    return result;
+                }
+                lastError = body != null && body.length() > MAX_ERROR_LENGTH ? body.substring(0, MAX_ERROR_LENGTH) : body;
+                if (!isRetryableStatus(statusCode)) {
+                    break;
+                }
+                long retryAfterMs = retryAfterMillis(retryAfter, System.currentTimeMillis());
+                if (retryAfterMs > 0) {
+                    logger.warn("WATI pediu {} ms de pausa ({}); envios da campanha aguardando", retryAfterMs, statusCode);
+                    rateLimiter.pause(retryAfterMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lastError = "Interrompido";
+                break;
+            } catch (IOException e) {
+                lastError = e.getMessage();
+                if (!isNotSent(e)) {
+                    // O pedido pode ter chegado ao WATI: reenviar arriscaria mensagem duplicada
+                    break;
+                }
+            }
+
+            if (attempt <= maxRetries) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(500L << (attempt - 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        logger.warn("Template {} para {} falhou após {} tentativa(s): {}", templateName, phone, attempt, lastError);
+        return failure(phone, statusCode, attempt, lastError);
+    }
+
+    /**
+     * 429 e 503: o WATI recusou o pedido sem processá-lo
+     */
+    static boolean isRetryableStatus(int statusCode) {
+        return statusCode == 429 || statusCode == 503;
+    }
+
+    /**
+     * Falhas anteriores ao envio do pedido (conexão recusada, timeout de
+     * conexão ou de espera no pool, host desconhecido)
+     */
+    static boolean isNotSent(IOException e) {
+        return e instanceof ConnectTimeoutException
+                || e instanceof HttpHostConnectException
+                || e instanceof ConnectionPoolTimeoutException
+                || e instanceof UnknownHostException;
+    }
+
+    private static Map<String, Object> failure(String phone, int statusCode, int attempts, String error) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("tipo", "resultado");
+        result.put("phoneNumber", phone);
+        result.put("ok", false);
+        result.put("status_code", statusCode);
+        result.put("tentativas", attempts);
+        result.put("error", error);
+        return result;
+    }
+
+    /**
+     * Espera pedida pelo cabeçalho Retry-After (segundos ou data HTTP), limitada
+     * a MAX_RETRY_AFTER_MS; 0 se ausente ou inválido
+     */
+    static long retryAfterMillis(String header, long nowMillis) {
+        if (header == null || header.trim().isEmpty()) {
+            return 0;
+        }
+        String value = header.trim();
+        long millis;
+        if (value.matches("\\d+")) {
+            millis = value.length() > 9 ? MAX_RETRY_AFTER_MS : Long.parseLong(value) * 1000;
+        } else {
+            Date date = DateUtils.parseDate(value);
+            if (date == null) {
+                return 0;
+            }
+            millis = date.getTime() - nowMillis;
+        }
+        return Math.max(0, Math.min(MAX_RETRY_AFTER_MS, millis));
+    }
+
+    private static Map<String, Object> summary(String templateName, int total, int sent, Set<String> failed,
+                                               long start, boolean interrupted) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("tipo", "resumo");
+        summary.put("ok", failed.isEmpty() && !interrupted);
+        summary.put("template", templateName);
+        summary.put("total", total);
+        summary.put("enviados", sent);
+        summary.put("falhas", failed.size());
+        summary.put("telefones_com_falha", new ArrayList<>(failed));
+        summary.put("interrompido", interrupted);
+        summary.put("tempo_ms", System.currentTimeMillis() - start);
+        return summary;
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        executor.shutdownNow();
+        httpClient.close();
+    }
+
+    /**
+     * Espaçamento uniforme entre envios (sem acumular rajadas)
+     */
+    private static final class RateLimiter {
+        private final long intervalNanos;
+        private long next = System.nanoTime();
+
+        RateLimiter(double perSecond) {
+            this.intervalNanos = perSecond <= 0 ? 0 : (long) (1_000_000_000L / perSecond);
+        }
+
+        /**
+         * Nenhum envio sai antes de pauseMs a partir de agora
+         */
+        synchronized void pause(long pauseMs) {
+            next = Math.max(next, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pauseMs));
+        }
+
+        void acquire() throws InterruptedException {
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (next < now) {
+                    next = now;
+                }
+                wait = next - now;
+                next += intervalNanos;
+            }
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.sitka.satellite.service;
 
+import com.sitka.satellite.timing.StageTimer;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
@@ -19,6 +20,7 @@ import java.net.URLEncoder;
 import java.io.File;
 import java.io.FileInputStream;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.entity.mime.content.ContentBody;
 import org.apache.http.entity.mime.content.FileBody;
 
 @Service
@@ -125,6 +127,16 @@ public class WatiMessageService {
      * Enviar arquivo/imagem via WATI usando o endpoint /sendSessionFile
      */
     public Map<String, Object> sendFile(String phoneNumber, File file, String caption) {
+        return sendFile(phoneNumber, new FileBody(file), caption);
+    }
+
+    /**
+     * Enviar mídia já montada via WATI usando o endpoint /sendSessionFile
+     *
+     * A mesma parte (ex.: ByteArrayBody) pode ser reutilizada para vários
+     * destinatários, evitando reler/recodificar o arquivo a cada envio.
+     */
+    public Map<String, Object> sendFile(String phoneNumber, ContentBody media, String caption) {
         Map<String, Object> response = new HashMap<>();
 
         try {
@@ -150,19 +162,25 @@ public class WatiMessageService {
 
             // Criar multipart entity
             MultipartEntityBuilder builder = MultipartEntityBuilder.create();
-            builder.addPart("file", new FileBody(file));
+            builder.addPart("file", media);
             httpPost.setEntity(builder.build());
 
             // Executar request
-            CloseableHttpResponse httpResponse = httpClient.execute(httpPost);
-
-            // Obter response
-            String responseBody = EntityUtils.toString(httpResponse.getEntity());
-            int statusCode = httpResponse.getStatusLine().getStatusCode();
+            CloseableHttpResponse httpResponse;
+            String responseBody;
+            int statusCode;
+            try (StageTimer.Stage stage = StageTimer.start("wati").bytes(media.getContentLength())) {
+                httpResponse = httpClient.execute(httpPost);
+
+                // Obter response
+                responseBody = EntityUtils.toString(httpResponse.getEntity());
+                statusCode = httpResponse.getStatusLine().getStatusCode();
+                stage.status(String.valueOf(statusCode));
+            }
 
             // Log de debug
             logger.info("WATI File Request URL: {}", url);
-            logger.info("WATI File Request - File: {}, Caption: {}", file.getName(), caption);
+            logger.info("WATI File Request - File: {}, Caption: {}", media.getFilename(), caption);
             logger.info("WATI File Response - Status: {}, Body: {}", statusCode, responseBody);
 
             // Processar response
@@ -208,23 +226,12 @@ public class WatiMessageService {
 
             CloseableHttpClient httpClient = HttpClients.createDefault();
 
-            // Remover "Bearer " do token se estiver presente
-            String token = watiApiToken.startsWith("Bearer ") ? watiApiToken.substring(7) : watiApiToken;
-            String encodedToken = URLEncoder.encode(token, "UTF-8");
-            String url = String.format("%s/sendSessionMessage?token=%s",
-                    watiBaseUrl, encodedToken);
+            String url = templateUrl();
+            JSONObject payload = templatePayload(cleanPhoneNumber, templateName, parameters);
 
             HttpPost httpPost = new HttpPost(url);
-            httpPost.setHeader("Authorization", "Bearer " + token);
+            httpPost.setHeader("Authorization", "Bearer " + bearerToken());
             httpPost.setHeader("Content-Type", "application/json");
-
-            JSONObject payload = new JSONObject();
-            payload.put("phoneNumber", cleanPhoneNumber);
-            payload.put("template", templateName);
-            if (parameters != null) {
-                payload.put("parameters", parameters);
-            }
-
             httpPost.setEntity(new StringEntity(payload.toString(), "UTF-8"));
 
             CloseableHttpResponse httpResponse = httpClient.execute(httpPost);
@@ -260,4 +267,32 @@ public class WatiMessageService {
 
         return response;
     }
+
+    /**
+     * Token do WATI sem o prefixo "Bearer "
+     */
+    String bearerToken() {
+        return watiApiToken.startsWith("Bearer ") ? watiApiToken.substring(7) : watiApiToken;
+    }
+
+    /**
+     * URL de envio de mensagem com template (também usada no broadcast)
+     */
+    String templateUrl() throws IOException {
+        return String.format("%s/sendSessionMessage?token=%s",
+                watiBaseUrl, URLEncoder.encode(bearerToken(), "UTF-8"));
+    }
+
+    /**
+     * Corpo JSON de uma mensagem com template
+     */
+    JSONObject templatePayload(String cleanPhoneNumber, String templateName, Map<String, String> parameters) {
+        JSONObject payload = new JSONObject();
+        payload.put("phoneNumber", cleanPhoneNumber);
+        payload.put("template", templateName);
+        if (parameters != null) {
+            payload.put("parameters", parameters);
+        }
+        return payload;
+    }
 }
@@ -0,0 +1,267 @@
+package com.sitka.satellite.service;
+
+import com.sitka.satellite.util.AddressNormalizer;
+import com.sitka.satellite.util.Hashing;
+import com.sitka.satellite.util.PhoneNumbers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Recebimento de mensagens do WATI (webhook POST /wati/webhook).
+ *
+ * O pedido só é validado e enfileirado; a geração e o envio da imagem rodam
+ * em app.wati.webhook.workers threads. Ids de mensagem já vistos (reentregas
+ * do WATI) são ignorados usando um conjunto limitado aos últimos dedup-size ids;
+ * mensagens sem id usam o hash de telefone, horário e texto.
+ *
+ * Só geram imagem textos que tragam um endereço de verdade (tipo de logradouro
+ * seguido de número, ou CEP) ou que comecem por uma palavra-chave de
+ * app.wati.webhook.keywords ("imagem Rua X, 10" / "/imagem ...").
+ */
+@Service
+public class WatiWebhookService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WatiWebhookService.class);
+
+    /** Resultado do recebimento */
+    public enum Outcome { QUEUED, DUPLICATE, IGNORED, REJECTED }
+
+    /** Tipo de logradouro (texto normalizado) seguido, mais adiante, de um número */
+    private static final Pattern STREET_WITH_NUMBER = Pattern.compile(
+            "\\b(rua|r|avenida|av|alameda|al|travessa|tv|estrada|estr|rodovia|rod|praca|pca|largo|lgo"
+                    + "|via|viela|beco|ladeira|servidao|passagem|quadra|qd)\\b.*\\b\\d+\\b");
+    private static final Pattern CEP = Pattern.compile("\\b\\d{5}-?\\d{3}\\b");
+    /** Primeira palavra (com barra opcional) e o resto da mensagem */
+    private static final Pattern COMMAND = Pattern.compile("^/?([^\\s:]+)\\s*[:\\-]?\\s*(.*)$", Pattern.DOTALL);
+
+    private final FanOutService fanOutService;
+    private final String token;
+    private final int minAddressLength;
+    private final Set<String> keywords = new HashSet<>();
+    private final ArrayBlockingQueue<Runnable> queue;
+    private final ThreadPoolExecutor executor;
+
+    /** Últimos ids recebidos, em ordem de chegada (o mais antigo sai primeiro) */
+    private final Map<String, Boolean> seen;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong ignored = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong lagTotalMs = new AtomicLong();
+    private final AtomicLong lagMaxMs = new AtomicLong();
+
+    public WatiWebhookService(
+            FanOutService fanOutService,
+            @Value("${app.wati.webhook.token:}") String token,
+            @Value("${app.wati.webhook.workers:2}") int workers,
+            @Value("${app.wati.webhook.queue-capacity:500}") int queueCapacity,
+            @Value("${app.wati.webhook.dedup-size:10000}") int dedupSize,
+            @Value("${app.wati.webhook.min-address-length:8}") int minAddressLength,
+            @Value("${app.wati.webhook.keywords:imagem,endereco}") List<String> keywords) {
+        this.fanOutService = fanOutService;
+        this.token = token;
+        if (token.isEmpty()) {
+            logger.warn("app.wati.webhook.token vazio; o webhook vai recusar todos os pedidos");
+        }
+        this.minAddressLength = minAddressLength;
+        for (String keyword : keywords) {
+            String normalized = AddressNormalizer.normalize(keyword);
+            if (!normalized.isEmpty()) {
+                this.keywords.add(normalized);
+            }
+        }
+        int maxSeen = Math.max(1, dedupSize);
+        this.seen = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxSeen;
+            }
+        });
+
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        AtomicInteger counter = new AtomicInteger();
+        int threads = Math.max(1, workers);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue, runnable -> {
+            Thread thread = new Thread(runnable, "wati-webhook-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sem token configurado, nenhum pedido é aceito
+     */
+    public boolean isAuthorized(String requestToken) {
+        return !token.isEmpty() && Hashing.secretEquals(token, requestToken);
+    }
+
+    /**
+     * Valida e enfileira a mensagem recebida. Só mensagens de texto enviadas pelo
+     * cliente com um endereço (ver addressFrom) geram imagem; as demais são ignoradas.
+     */
+    public Outcome accept(Map<String, Object> payload) {
+        received.incrementAndGet();
+
+        String eventType = asString(payload.get("eventType"));
+        String type = asString(payload.get("type"));
+        if ((eventType != null && !"message".equals(eventType))
+                || (type != null && !"text".equals(type))
+                || Boolean.TRUE.equals(payload.get("owner"))) {
+            ignored.incrementAndGet();
+            return Outcome.IGNORED;
+        }
+
+        String telefone = asString(payload.get("waId"));
+        String texto = asString(payload.get("text"));
+        String endereco = addressFrom(texto);
+        if (PhoneNumbers.digits(telefone).isEmpty() || endereco == null) {
+            ignored.incrementAndGet();
+            return Outcome.IGNORED;
+        }
+
+        String id = asString(payload.get("whatsappMessageId"));
+        if (id == null) {
+            id = asString(payload.get("id"));
+        }
+        if (id == null) {
+            // Sem id: a mesma mensagem reentregue tem o mesmo telefone, horário e texto
+            id = "sem-id:" + Hashing.sha256Hex((telefone + "|" + asString(payload.get("timestamp")) + "|" + texto)
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        if (seen.putIfAbsent(id, Boolean.TRUE) != null) {
+            duplicates.incrementAndGet();
+            return Outcome.DUPLICATE;
+        }
+
+        try {
+            executor.execute(new Job(id, telefone, endereco));
+        } catch (RejectedExecutionException e) {
+            // Fila cheia: esquece o id para que a reentrega do WATI seja aceita
+            seen.remove(id);
+            rejected.incrementAndGet();
+            logger.warn("Fila do webhook cheia ({} pendentes); mensagem {} recusada", queue.size(), id);
+            return Outcome.REJECTED;
+        }
+        queued.incrementAndGet();
+        return Outcome.QUEUED;
+    }
+
+    /**
+     * Endereço pedido na mensagem, ou null se ela não for um pedido: começa por
+     * uma palavra-chave (o resto é o endereço) ou traz tipo de logradouro com
+     * número ou CEP; em todo caso com pelo menos min-address-length caracteres
+     */
+    String addressFrom(String texto) {
+        if (texto == null) {
+            return null;
+        }
+        String mensagem = texto.trim().replaceAll("\\s+", " ");
+        Matcher command = COMMAND.matcher(mensagem);
+        if (command.matches() && keywords.contains(AddressNormalizer.normalize(command.group(1)))) {
+            String endereco = command.group(2).trim();
+            return endereco.length() >= minAddressLength ? endereco : null;
+        }
+        if (mensagem.length() < minAddressLength) {
+            return null;
+        }
+        boolean address = STREET_WITH_NUMBER.matcher(AddressNormalizer.normalize(mensagem)).find()
+                || CEP.matcher(mensagem).find();
+        return address ? mensagem : null;
+    }
+
+    public Map<String, Object> snapshot() {
+        long done = processed.get() + failed.get();
+        long checked = queued.get() + duplicates.get() + rejected.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("received", received.get());
+        stats.put("queued", queued.get());
+        stats.put("duplicates", duplicates.get());
+        stats.put("dedup_hit_rate", checked == 0 ? 0.0 : (double) duplicates.get() / checked);
+        stats.put("ignored", ignored.get());
+        stats.put("rejected", rejected.get());
+        stats.put("processed", processed.get());
+        stats.put("failed", failed.get());
+        stats.put("queue_size", queue.size());
+        stats.put("queue_capacity", queue.size() + queue.remainingCapacity());
+        stats.put("active_workers", executor.getActiveCount());
+        stats.put("queue_lag_ms", oldestPendingMs());
+        stats.put("avg_lag_ms", done == 0 ? 0 : lagTotalMs.get() / done);
+        stats.put("max_lag_ms", lagMaxMs.get());
+        return stats;
+    }
+
+    /**
+     * Tempo de espera da mensagem mais antiga ainda na fila
+     */
+    private long oldestPendingMs() {
+        Runnable head = queue.peek();
+        return head instanceof Job ? (System.nanoTime() - ((Job) head).enqueuedAt) / 1_000_000 : 0;
+    }
+
+    private static String asString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private final class Job implements Runnable {
+        private final String id;
+        private final String telefone;
+        private final String endereco;
+        private final long enqueuedAt = System.nanoTime();
+
+        Job(String id, String telefone, String endereco) {
+            this.id = id;
+            this.telefone = telefone;
+            this.endereco = endereco;
+        }
+
+        @Override
+        public void run() {
+            long lagMs = (System.nanoTime() - enqueuedAt) / 1_000_000;
+            lagTotalMs.addAndGet(lagMs);
+            lagMaxMs.accumulateAndGet(lagMs, Math::max);
+
+            logger.info("Webhook: mensagem {} de {} (fila {} ms): {}", id, telefone, lagMs, endereco);
+            try {
+                Map<String, Object> result = fanOutService.sendToRecipients(endereco, Collections.singletonList(telefone));
+                if (Boolean.TRUE.equals(result.get("ok"))) {
+                    processed.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                    logger.warn("Webhook: mensagem {} não atendida: {}", id, result.get("mensagem_imagemdesatelite"));
+                }
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                logger.error("Webhook: erro ao processar mensagem " + id, e);
+            }
+        }
+    }
+}
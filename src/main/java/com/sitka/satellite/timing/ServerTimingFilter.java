@@ -0,0 +1,108 @@
+package com.sitka.satellite.timing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Adiciona o cabeçalho Server-Timing com as etapas cronometradas pelo
+ * StageTimer. Como os cabeçalhos precisam sair antes do corpo, o valor é
+ * calculado no momento em que a resposta começa a ser escrita.
+ *
+ * Também configura o segredo do hash de endereço dos eventos JFR
+ * (app.timing.address-salt).
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    static final String HEADER = "Server-Timing";
+
+    public ServerTimingFilter(@Value("${app.timing.address-salt:}") String addressSalt) {
+        StageTimer.setAddressSalt(addressSalt);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        StageTimer.begin();
+        TimingResponse wrapped = new TimingResponse(response, start);
+        try {
+            chain.doFilter(request, wrapped);
+        } finally {
+            String header = StageTimer.end(System.nanoTime() - start);
+            if (!wrapped.written && !response.isCommitted() && header != null) {
+                response.setHeader(HEADER, header);
+            }
+        }
+    }
+
+    private static final class TimingResponse extends HttpServletResponseWrapper {
+
+        private final long start;
+        boolean written;
+
+        TimingResponse(HttpServletResponse response, long start) {
+            super(response);
+            this.start = start;
+        }
+
+        private void writeHeader() {
+            if (!written && !isCommitted()) {
+                written = true;
+                String header = StageTimer.current(System.nanoTime() - start);
+                if (header != null) {
+                    setHeader(HEADER, header);
+                }
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeader();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeader();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeHeader();
+            super.sendRedirect(location);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.sitka.satellite.timing;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR de uma etapa do pipeline (geocode, imagery, decode, encode,
+ * store, wati...). A duração é a do próprio evento.
+ */
+@Name("com.sitka.satellite.Stage")
+@Label("Etapa do pipeline")
+@Category({"Sitka", "Satellite"})
+@Description("Duração de uma etapa do processamento de um endereço")
+@StackTrace(false)
+class StageEvent extends jdk.jfr.Event {
+
+    @Label("Etapa")
+    String stage;
+
+    @Label("Hash do endereço")
+    @Description("HMAC-SHA256 do endereço normalizado com app.timing.address-salt")
+    String addressHash;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Status")
+    String status;
+}
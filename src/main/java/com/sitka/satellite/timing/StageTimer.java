@@ -0,0 +1,165 @@
+package com.sitka.satellite.timing;
+
+import com.sitka.satellite.util.AddressNormalizer;
+import com.sitka.satellite.util.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Cronometra as etapas do pedido em andamento na thread atual.
+ *
+ * Cada etapa vira um StageEvent no JFR (em qualquer thread) e, na thread do
+ * pedido HTTP, entra no cabeçalho Server-Timing montado pelo ServerTimingFilter.
+ * Etapas repetidas no mesmo pedido são somadas.
+ *
+ * <pre>
+ * try (StageTimer.Stage stage = StageTimer.start("imagery")) {
+ *     ...
+ *     stage.bytes(result.length).status("static-maps");
+ * }
+ * </pre>
+ */
+public final class StageTimer {
+
+    private static final ThreadLocal<Context> CURRENT = new ThreadLocal<>();
+
+    /** Chave do HMAC do endereço; aleatória por processo até setAddressSalt */
+    private static volatile byte[] addressKey = randomKey();
+
+    private StageTimer() {
+    }
+
+    /**
+     * Associa o endereço às próximas etapas desta thread. Só é registrado o
+     * HMAC do endereço normalizado, para que gravações JFR não permitam
+     * descobrir endereços testando candidatos.
+     */
+    public static void setAddress(String endereco) {
+        Context context = CURRENT.get();
+        if (context != null && endereco != null && !endereco.isEmpty()) {
+            context.addressHash = addressHash(endereco);
+        }
+    }
+
+    static String addressHash(String endereco) {
+        return Hashing.hmacSha256Hex(addressKey, AddressNormalizer.normalize(endereco)).substring(0, 32);
+    }
+
+    /**
+     * Define o segredo do HMAC (app.timing.address-salt), igual em todas as
+     * instâncias para que os hashes possam ser cruzados; vazio mantém a chave
+     * aleatória deste processo
+     */
+    public static void setAddressSalt(String salt) {
+        addressKey = salt == null || salt.isEmpty() ? randomKey() : salt.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] randomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+
+    public static Stage start(String name) {
+        return new Stage(name, CURRENT.get());
+    }
+
+    static void begin() {
+        CURRENT.set(new Context());
+    }
+
+    /**
+     * Encerra o pedido da thread; devolve o valor do cabeçalho Server-Timing
+     */
+    static String end(long totalNanos) {
+        Context context = CURRENT.get();
+        CURRENT.remove();
+        return context == null ? null : context.header(totalNanos);
+    }
+
+    static String current(long totalNanos) {
+        Context context = CURRENT.get();
+        return context == null ? null : context.header(totalNanos);
+    }
+
+    /**
+     * Etapa em andamento; fechar registra a duração
+     */
+    public static final class Stage implements AutoCloseable {
+
+        private final String name;
+        private final Context context;
+        private final long start = System.nanoTime();
+        private final StageEvent event = new StageEvent();
+        private long bytes;
+        private String status = "ok";
+        private boolean closed;
+
+        private Stage(String name, Context context) {
+            this.name = name;
+            this.context = context;
+            event.begin();
+        }
+
+        public Stage bytes(long bytes) {
+            this.bytes = bytes;
+            return this;
+        }
+
+        public Stage status(String status) {
+            this.status = status;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = name;
+                event.addressHash = context != null ? context.addressHash : null;
+                event.bytes = bytes;
+                event.status = status;
+                event.commit();
+            }
+            if (context != null) {
+                context.add(name, System.nanoTime() - start, status);
+            }
+        }
+    }
+
+    private static final class Context {
+        final Map<String, long[]> nanos = new LinkedHashMap<>();
+        final Map<String, String> statuses = new LinkedHashMap<>();
+        String addressHash;
+
+        void add(String name, long elapsedNanos, String status) {
+            nanos.computeIfAbsent(name, k -> new long[1])[0] += elapsedNanos;
+            statuses.put(name, status);
+        }
+
+        String header(long totalNanos) {
+            StringBuilder header = new StringBuilder();
+            for (Map.Entry<String, long[]> entry : nanos.entrySet()) {
+                String status = statuses.get(entry.getKey());
+                header.append(entry.getKey()).append(";dur=").append(millis(entry.getValue()[0]));
+                if (status != null && !"ok".equals(status)) {
+                    header.append(";desc=\"").append(status.replace("\"", "")).append('"');
+                }
+                header.append(", ");
+            }
+            return header.append("total;dur=").append(millis(totalNanos)).toString();
+        }
+
+        private static String millis(long nanos) {
+            return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000d);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.sitka.satellite.util;
+
+import java.text.Normalizer;
+import java.util.regex.Pattern;
+
+/**
+ * Forma canônica de endereços, comum às chaves do ImageStore e do índice de
+ * geocodificação local
+ */
+public final class AddressNormalizer {
+
+    private static final Pattern NON_ALNUM = Pattern.compile("[^a-z0-9]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private AddressNormalizer() {
+    }
+
+    /**
+     * Sem acentos, minúsculas, só [a-z0-9] separados por espaço
+     */
+    public static String normalize(String text) {
+        String decomposed = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return NON_ALNUM.matcher(decomposed.toLowerCase()).replaceAll(" ").trim();
+    }
+}
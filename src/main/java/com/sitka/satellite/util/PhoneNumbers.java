@@ -0,0 +1,37 @@
+package com.sitka.satellite.util;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Telefones como o WATI espera (só dígitos), comum ao envio múltiplo e às campanhas
+ */
+public final class PhoneNumbers {
+
+    private PhoneNumbers() {
+    }
+
+    /**
+     * Só os dígitos do telefone; vazio se null
+     */
+    public static String digits(String phone) {
+        return phone == null ? "" : phone.replaceAll("[^0-9]", "");
+    }
+
+    /**
+     * Um item por telefone (com ou sem máscara), na ordem recebida; vale o
+     * primeiro item de cada telefone e os sem dígitos são descartados
+     */
+    public static <T> Map<String, T> unique(Collection<T> items, Function<T, String> phoneOf) {
+        Map<String, T> unique = new LinkedHashMap<>();
+        for (T item : items) {
+            String phone = digits(phoneOf.apply(item));
+            if (!phone.isEmpty()) {
+                unique.putIfAbsent(phone, item);
+            }
+        }
+        return unique;
+    }
+}
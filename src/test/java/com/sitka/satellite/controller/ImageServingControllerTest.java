@@ -0,0 +1,160 @@
+package com.sitka.satellite.controller;
+
+import com.sitka.satellite.service.ImageStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ImageServingControllerTest {
+
+    private static final long SIZE = 1000;
+
+    @TempDir
+    Path dir;
+
+    private MockMvc mvc;
+    private ImageStore.StoredImage image;
+    private byte[] png;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ImageStore store = new ImageStore(dir.toString(), 100, 1024, 0);
+        png = new byte[100];
+        for (int i = 0; i < png.length; i++) {
+            png[i] = (byte) i;
+        }
+        image = store.put(ImageStore.keyFor("Rua das Flores, 10"), png);
+
+        ImageServingController controller = new ImageServingController();
+        ReflectionTestUtils.setField(controller, "imageStore", store);
+        ReflectionTestUtils.setField(controller, "maxAgeSeconds", 60L);
+        mvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    private String url() {
+        return ImageStore.URL_PREFIX + image.getKey();
+    }
+
+    @Test
+    void parsesClosedOpenAndSuffixRanges() {
+        assertArrayEquals(new long[]{0, 99}, ImageServingController.parseRange("bytes=0-99", SIZE));
+        assertArrayEquals(new long[]{500, 999}, ImageServingController.parseRange("bytes=500-", SIZE));
+        assertArrayEquals(new long[]{900, 999}, ImageServingController.parseRange("bytes=-100", SIZE));
+        assertArrayEquals(new long[]{0, 999}, ImageServingController.parseRange("bytes=-5000", SIZE));
+        assertArrayEquals(new long[]{10, 20}, ImageServingController.parseRange(" bytes= 10 - 20 ", SIZE));
+    }
+
+    @Test
+    void clampsEndToLastByte() {
+        assertArrayEquals(new long[]{990, 999}, ImageServingController.parseRange("bytes=990-5000", SIZE));
+    }
+
+    @Test
+    void rejectsUnsatisfiableRanges() {
+        assertArrayEquals(new long[0], ImageServingController.parseRange("bytes=1000-", SIZE));
+        assertArrayEquals(new long[0], ImageServingController.parseRange("bytes=1000-1200", SIZE));
+        assertArrayEquals(new long[0], ImageServingController.parseRange("bytes=-0", SIZE));
+    }
+
+    @Test
+    void ignoresInvalidMultipleOrUnknownRanges() {
+        assertNull(ImageServingController.parseRange("bytes=50-10", SIZE));
+        assertNull(ImageServingController.parseRange("bytes=1500-1200", SIZE));
+        assertNull(ImageServingController.parseRange("bytes=0-1,5-6", SIZE));
+        assertNull(ImageServingController.parseRange("items=0-1", SIZE));
+        assertNull(ImageServingController.parseRange("bytes=abc", SIZE));
+        assertNull(ImageServingController.parseRange("bytes=a-b", SIZE));
+    }
+
+    @Test
+    void servesFullImageWithValidators() throws Exception {
+        mvc.perform(get(url()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", image.getETag()))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().string("Cache-Control", "public, max-age=60"))
+                .andExpect(content().contentType("image/png"))
+                .andExpect(content().bytes(png));
+    }
+
+    @Test
+    void conditionalGetReturnsNotModified() throws Exception {
+        MvcResult result = mvc.perform(get(url()).header("If-None-Match", image.getETag()))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", image.getETag()))
+                .andReturn();
+        assertEquals(0, result.getResponse().getContentAsByteArray().length);
+
+        mvc.perform(get(url()).header("If-None-Match", "\"outra\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void rangedGetReturnsPartialContent() throws Exception {
+        mvc.perform(get(url()).header("Range", "bytes=10-19"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 10-19/100"))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().longValue("Content-Length", 10))
+                .andExpect(content().bytes(Arrays.copyOfRange(png, 10, 20)));
+    }
+
+    @Test
+    void rangeIsIgnoredWhenIfRangeDoesNotMatch() throws Exception {
+        mvc.perform(get(url()).header("Range", "bytes=10-19").header("If-Range", "\"antiga\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(png));
+    }
+
+    @Test
+    void reversedRangeReturnsFullImage() throws Exception {
+        mvc.perform(get(url()).header("Range", "bytes=50-10"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Range"))
+                .andExpect(content().bytes(png));
+    }
+
+    @Test
+    void unsatisfiableRangeReturns416() throws Exception {
+        mvc.perform(get(url()).header("Range", "bytes=500-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */100"));
+    }
+
+    @Test
+    void delegatesBodyToSendfileWhenSupported() throws Exception {
+        MvcResult result = mvc.perform(get(url())
+                        .header("Range", "bytes=10-19")
+                        .requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().longValue("Content-Length", 10))
+                .andReturn();
+
+        assertEquals(image.getPath().toAbsolutePath().toString(),
+                result.getRequest().getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(10L, result.getRequest().getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(20L, result.getRequest().getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, result.getResponse().getContentAsByteArray().length);
+    }
+
+    @Test
+    void unknownKeyReturns404() throws Exception {
+        mvc.perform(get(ImageStore.URL_PREFIX + "00000000000000000000000000000000"))
+                .andExpect(status().isNotFound());
+    }
+}
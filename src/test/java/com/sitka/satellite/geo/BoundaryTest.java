@@ -0,0 +1,107 @@
+package com.sitka.satellite.geo;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.maps.model.LatLng;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundaryTest {
+
+    /** Quadrado de ~110 m em São Paulo, com um buraco no meio */
+    private static final String SQUARE_WITH_HOLE = "{\"type\":\"Polygon\",\"coordinates\":["
+            + "[[-46.6570,-23.5620],[-46.6560,-23.5620],[-46.6560,-23.5610],[-46.6570,-23.5610],[-46.6570,-23.5620]],"
+            + "[[-46.6566,-23.5616],[-46.6564,-23.5616],[-46.6564,-23.5614],[-46.6566,-23.5614],[-46.6566,-23.5616]]]}";
+
+    private static JsonElement json(String text) {
+        return JsonParser.parseString(text);
+    }
+
+    @Test
+    void readsPolygonWithHole() {
+        Boundary boundary = Boundary.fromGeoJson(json(SQUARE_WITH_HOLE));
+        assertEquals(2, boundary.getRings().size());
+        assertEquals(10, boundary.getRings().get(0).length);
+        assertEquals(-46.6570, boundary.getRings().get(0)[0], 1e-9);
+        assertEquals(-23.5620, boundary.getRings().get(0)[1], 1e-9);
+    }
+
+    @Test
+    void readsFeatureCollectionAndMultiPolygon() {
+        String multi = "{\"type\":\"MultiPolygon\",\"coordinates\":["
+                + "[[[0,0],[1,0],[1,1],[0,0]]],"
+                + "[[[2,2],[3,2],[3,3],[2,2]]]]}";
+        String collection = "{\"type\":\"FeatureCollection\",\"features\":["
+                + "{\"type\":\"Feature\",\"properties\":{},\"geometry\":" + multi + "},"
+                + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"GeometryCollection\",\"geometries\":[" + SQUARE_WITH_HOLE + "]}}]}";
+
+        assertEquals(2, Boundary.fromGeoJson(json(multi)).getRings().size());
+        assertEquals(4, Boundary.fromGeoJson(json(collection)).getRings().size());
+    }
+
+    @Test
+    void rejectsInvalidGeoJson() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Boundary.fromGeoJson(json("{\"type\":\"Point\",\"coordinates\":[0,0]}")));
+        assertThrows(IllegalArgumentException.class,
+                () -> Boundary.fromGeoJson(json("{\"type\":\"Polygon\"}")));
+        assertThrows(IllegalArgumentException.class,
+                () -> Boundary.fromGeoJson(json("{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,1]]]}")));
+        assertThrows(IllegalArgumentException.class,
+                () -> Boundary.fromGeoJson(json("{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[181,0],[1,1],[0,0]]]}")));
+        assertThrows(IllegalArgumentException.class,
+                () -> Boundary.fromGeoJson(json("{\"type\":\"FeatureCollection\",\"features\":[]}")));
+        assertThrows(IllegalArgumentException.class, () -> Boundary.fromGeoJson(json("[1,2]")));
+    }
+
+    @Test
+    void centerIsMiddleOfBoundingBox() {
+        LatLng center = Boundary.fromGeoJson(json(SQUARE_WITH_HOLE)).center();
+        assertEquals(-23.5615, center.lat, 1e-9);
+        assertEquals(-46.6565, center.lng, 1e-9);
+    }
+
+    @Test
+    void fitZoomKeepsWholeBoundaryInView() {
+        Boundary boundary = Boundary.fromGeoJson(json(SQUARE_WITH_HOLE));
+        LatLng center = boundary.center();
+        int zoom = boundary.fitZoom(center, 600, 600, 15, 18);
+        // ~110 m de lado: a 18 (~0,55 m/px) ocupa ~190 px e cabe
+        assertEquals(18, zoom);
+
+        // Centrado longe do contorno, é preciso afastar até o mínimo
+        assertEquals(15, boundary.fitZoom(new LatLng(-23.60, -46.70), 600, 600, 15, 18));
+    }
+
+    @Test
+    void fingerprintDependsOnCoordinates() {
+        Boundary a = Boundary.fromGeoJson(json(SQUARE_WITH_HOLE));
+        Boundary b = Boundary.fromGeoJson(json(SQUARE_WITH_HOLE));
+        Boundary c = Boundary.fromGeoJson(json(SQUARE_WITH_HOLE.replace("-46.6570", "-46.6571")));
+        assertEquals(a.fingerprint(), b.fingerprint());
+        assertNotEquals(a.fingerprint(), c.fingerprint());
+        assertEquals(64, a.fingerprint().length());
+    }
+
+    @Test
+    void overlayFillsInsideAndLeavesHoleAndOutside() {
+        Boundary boundary = Boundary.fromGeoJson(json(SQUARE_WITH_HOLE));
+        LatLng center = boundary.center();
+        BufferedImage image = new BufferedImage(600, 600, BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage drawn = BoundaryOverlay.draw(image, boundary, center, 18);
+
+        // Centro (buraco) e canto (fora) intactos; entre a borda e o buraco, preenchido
+        assertEquals(0, drawn.getRGB(300, 300) & 0xFFFFFF);
+        assertEquals(0, drawn.getRGB(5, 5) & 0xFFFFFF);
+        int filled = drawn.getRGB(300, 300 - 70) & 0xFFFFFF;
+        assertNotEquals(0, filled);
+        assertTrue(((filled >> 16) & 0xFF) > 0 && (filled & 0xFF) == 0, Integer.toHexString(filled));
+    }
+}
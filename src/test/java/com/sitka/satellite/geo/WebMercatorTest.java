@@ -0,0 +1,36 @@
+package com.sitka.satellite.geo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WebMercatorTest {
+
+    @Test
+    void worldCoordinatesAtZoomZero() {
+        assertEquals(0, WebMercator.worldX(-180, 0), 1e-9);
+        assertEquals(128, WebMercator.worldX(0, 0), 1e-9);
+        assertEquals(128, WebMercator.worldY(0, 0), 1e-9);
+        assertEquals(256 * 1024, WebMercator.worldSize(10), 1e-9);
+    }
+
+    @Test
+    void projectionRoundTrips() {
+        double lat = -23.5615;
+        double lng = -46.6565;
+        for (int zoom = 0; zoom <= 21; zoom++) {
+            assertEquals(lng, WebMercator.lng(WebMercator.worldX(lng, zoom), zoom), 1e-9);
+            assertEquals(lat, WebMercator.lat(WebMercator.worldY(lat, zoom), zoom), 1e-9);
+        }
+    }
+
+    @Test
+    void northIsUpAndResolutionHalvesPerZoom() {
+        assertTrue(WebMercator.worldY(10, 5) < WebMercator.worldY(-10, 5));
+        double at18 = WebMercator.metersPerPixel(-23.5615, 18);
+        assertEquals(at18 * 2, WebMercator.metersPerPixel(-23.5615, 17), 1e-9);
+        // ~0,55 m/px em São Paulo no zoom 18
+        assertEquals(0.55, at18, 0.02);
+    }
+}
@@ -0,0 +1,88 @@
+package com.sitka.satellite.imagery;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgePolicyTest {
+
+    @Test
+    void usesInitialDelayUntilEnoughSamples() {
+        HedgePolicy policy = new HedgePolicy(0.95, 1500, 100, 0.05, 200);
+        for (int i = 0; i < 19; i++) {
+            policy.record(200);
+        }
+        assertEquals(1500, policy.delayMs());
+        policy.record(200);
+        assertEquals(200, policy.delayMs());
+    }
+
+    @Test
+    void delayIsConfiguredPercentileOfWindow() {
+        HedgePolicy policy = new HedgePolicy(0.95, 1500, 10, 0.05, 100);
+        for (int i = 1; i <= 100; i++) {
+            policy.record(i * 10);
+        }
+        assertEquals(950, policy.delayMs());
+
+        HedgePolicy median = new HedgePolicy(0.5, 1500, 10, 0.05, 100);
+        for (int i = 1; i <= 100; i++) {
+            median.record(i * 10);
+        }
+        assertEquals(500, median.delayMs());
+    }
+
+    @Test
+    void neverGoesBelowMinimumDelay() {
+        HedgePolicy policy = new HedgePolicy(0.95, 1500, 100, 0.05, 50);
+        for (int i = 0; i < 50; i++) {
+            policy.record(5);
+        }
+        assertEquals(100, policy.delayMs());
+    }
+
+    @Test
+    void censoredSamplesKeepPercentileFromDrifting() {
+        HedgePolicy policy = new HedgePolicy(0.9, 1500, 10, 0.05, 100);
+        for (int i = 0; i < 100; i++) {
+            policy.record(100);
+        }
+        assertEquals(100, policy.delayMs());
+
+        // Primeiras tentativas perdedoras contam pelo tempo já esperado
+        for (int i = 0; i < 20; i++) {
+            policy.record(800);
+        }
+        assertEquals(800, policy.delayMs());
+    }
+
+    @Test
+    void percentileIsRecomputedOnlyEveryFewSamples() {
+        HedgePolicy policy = new HedgePolicy(1.0, 1500, 10, 0.05, 100);
+        for (int i = 0; i < 20; i++) {
+            policy.record(100);
+        }
+        assertEquals(100, policy.delayMs());
+
+        for (int i = 0; i < HedgePolicy.RECOMPUTE_EVERY - 1; i++) {
+            policy.record(300);
+        }
+        assertEquals(100, policy.delayMs(), "valor em cache");
+        policy.record(300);
+        assertEquals(300, policy.delayMs());
+    }
+
+    @Test
+    void hedgeRateIsLimitedByTokens() {
+        HedgePolicy policy = new HedgePolicy(0.95, 1500, 100, 0.5, 200);
+        policy.onRequest();
+        assertFalse(policy.tryHedge());
+        policy.onRequest();
+        assertTrue(policy.tryHedge());
+        assertFalse(policy.tryHedge());
+        assertEquals(1L, policy.snapshot().get("hedges"));
+        assertEquals(2L, policy.snapshot().get("hedges_suppressed"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.sitka.satellite.imagery;
+
+import com.google.maps.model.LatLng;
+import com.sitka.satellite.util.Hashing;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ImageryServiceTest {
+
+    private static final LatLng CENTER = new LatLng(-23.0, -47.5);
+
+    /** Roadmap de área rural: fundo cinza-claro uniforme e uma estrada fina */
+    private static byte[] ruralRoadmap() throws Exception {
+        BufferedImage image = new BufferedImage(600, 600, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(0xE8, 0xE8, 0xE8));
+        g.fillRect(0, 0, 600, 600);
+        g.setColor(Color.WHITE);
+        g.setStroke(new BasicStroke(4));
+        g.drawLine(0, 420, 600, 380);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static final class FixedProvider implements ImageryProvider {
+        final byte[] bytes;
+        final AtomicInteger calls = new AtomicInteger();
+
+        FixedProvider(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String getName() {
+            return "fixed";
+        }
+
+        @Override
+        public ImageryResult fetch(ImageryRequest request) {
+            calls.incrementAndGet();
+            return new ImageryResult(bytes, "image/png", getName());
+        }
+    }
+
+    private static ImageryService service(FixedProvider provider, List<String> fingerprints) {
+        return new ImageryService(Collections.singletonList(provider), null,
+                List.of("fixed"), fingerprints, true, 360, 100);
+    }
+
+    private static ImageryRequest request(String mapType) {
+        return new ImageryRequest("Estrada Rural, 10", CENTER, 18, 600, 600, mapType, false);
+    }
+
+    @Test
+    void plainRoadmapIsNotTakenForPlaceholder() throws Exception {
+        FixedProvider provider = new FixedProvider(ruralRoadmap());
+        ImageryService service = service(provider, Collections.emptyList());
+
+        assertNotNull(service.fetch(request("roadmap")));
+        assertNotNull(service.fetch(request("roadmap")));
+        assertEquals(2, provider.calls.get());
+    }
+
+    @Test
+    void sameContentAsSatelliteIsPlaceholderAndCached() throws Exception {
+        FixedProvider provider = new FixedProvider(ruralRoadmap());
+        ImageryService service = service(provider, Collections.emptyList());
+
+        assertNull(service.fetch(request("satellite")));
+        assertNull(service.fetch(request("hybrid")));
+        // Resultado negativo guardado: o provedor não é chamado de novo
+        assertNull(service.fetch(request("satellite")));
+        assertEquals(2, provider.calls.get());
+    }
+
+    @Test
+    void fingerprintMatchesAnyMapType() throws Exception {
+        byte[] bytes = ruralRoadmap();
+        ImageryService service = service(new FixedProvider(bytes), List.of(Hashing.sha256Hex(bytes).toUpperCase()));
+
+        assertNull(service.fetch(request("roadmap")));
+    }
+}
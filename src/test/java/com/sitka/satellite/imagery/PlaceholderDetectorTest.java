@@ -0,0 +1,73 @@
+package com.sitka.satellite.imagery;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlaceholderDetectorTest {
+
+    private static byte[] encode(BufferedImage image, String format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    private static BufferedImage noImagery(int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(0xE4, 0xE2, 0xDE));
+        g.fillRect(0, 0, size, size);
+        g.setColor(new Color(0x70, 0x70, 0x70));
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+        g.drawString("Sorry, we have no imagery here.", size / 2 - 90, size / 2);
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    void recognizesNoImageryTileAtAnySizeAndFormat() throws Exception {
+        assertTrue(PlaceholderDetector.looksLikePlaceholder(encode(noImagery(640), "png")));
+        assertTrue(PlaceholderDetector.looksLikePlaceholder(encode(noImagery(256), "png")));
+        assertTrue(PlaceholderDetector.looksLikePlaceholder(encode(noImagery(600), "jpg")));
+    }
+
+    @Test
+    void keepsTexturedImagery() throws Exception {
+        BufferedImage image = new BufferedImage(640, 640, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < 640; y++) {
+            for (int x = 0; x < 640; x++) {
+                int base = 90 + random.nextInt(60);
+                image.setRGB(x, y, (base << 16) | ((base + 20) << 8) | (base - 30));
+            }
+        }
+        assertFalse(PlaceholderDetector.looksLikePlaceholder(encode(image, "png")));
+    }
+
+    @Test
+    void keepsUniformWaterAndDarkTiles() throws Exception {
+        BufferedImage water = new BufferedImage(640, 640, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = water.createGraphics();
+        g.setColor(new Color(0x1A, 0x3C, 0x66));
+        g.fillRect(0, 0, 640, 640);
+        g.dispose();
+        assertFalse(PlaceholderDetector.looksLikePlaceholder(encode(water, "png")));
+
+        BufferedImage dark = new BufferedImage(640, 640, BufferedImage.TYPE_INT_RGB);
+        assertFalse(PlaceholderDetector.looksLikePlaceholder(encode(dark, "png")));
+    }
+
+    @Test
+    void ignoresBytesThatAreNotImages() throws Exception {
+        assertFalse(PlaceholderDetector.looksLikePlaceholder("não é imagem".getBytes("UTF-8")));
+    }
+}
@@ -0,0 +1,110 @@
+package com.sitka.satellite.imagery;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TilePackTest {
+
+    @TempDir
+    Path dir;
+
+    private Path writePack() throws Exception {
+        Path tiles = dir.resolve("tiles");
+        tile(tiles, 18, 97000, 148000, "a");
+        tile(tiles, 18, 97001, 148000, "bb");
+        tile(tiles, 19, 194000, 296000, "ccc");
+        Path pack = dir.resolve("p.pack");
+        assertEquals(3, TilePackWriter.write(tiles, pack));
+        return pack;
+    }
+
+    private static void tile(Path tiles, int zoom, int x, int y, String content) throws Exception {
+        Path file = tiles.resolve(zoom + "/" + x + "/" + y + ".png");
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /** Regrava um campo do índice (entry, campo 0=id 8=offset 16=length) */
+    private static void patch(Path pack, int entry, int field, long value, boolean asInt) throws Exception {
+        byte[] bytes = Files.readAllBytes(pack);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int position = TilePack.HEADER_SIZE + entry * TilePack.INDEX_ENTRY_SIZE + field;
+        if (asInt) {
+            buffer.putInt(position, (int) value);
+        } else {
+            buffer.putLong(position, value);
+        }
+        Files.write(pack, bytes);
+    }
+
+    @Test
+    void readsTilesById() throws Exception {
+        try (TilePack pack = new TilePack(writePack())) {
+            assertEquals(3, pack.size());
+            assertArrayEquals("a".getBytes(StandardCharsets.US_ASCII), pack.tile(18, 97000, 148000));
+            assertArrayEquals("bb".getBytes(StandardCharsets.US_ASCII), pack.tile(18, 97001, 148000));
+            assertArrayEquals("ccc".getBytes(StandardCharsets.US_ASCII), pack.tile(19, 194000, 296000));
+            assertNull(pack.tile(18, 97002, 148000));
+            assertNull(pack.tile(17, 97000, 148000));
+        }
+    }
+
+    @Test
+    void rejectsFilesThatAreNotPacks() throws Exception {
+        Path empty = Files.write(dir.resolve("vazio.pack"), new byte[0]);
+        assertThrows(IOException.class, () -> new TilePack(empty));
+        Path other = Files.write(dir.resolve("outro.pack"), "não é um pacote de tiles".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> new TilePack(other));
+    }
+
+    @Test
+    void rejectsTruncatedData() throws Exception {
+        Path pack = writePack();
+        byte[] bytes = Files.readAllBytes(pack);
+        Files.write(pack, Arrays.copyOf(bytes, bytes.length - 2));
+        assertThrows(IOException.class, () -> new TilePack(pack));
+    }
+
+    @Test
+    void rejectsIndexLargerThanFile() throws Exception {
+        Path pack = writePack();
+        byte[] bytes = Files.readAllBytes(pack);
+        ByteBuffer.wrap(bytes).putInt(TilePack.MAGIC.length, 1_000_000);
+        Files.write(pack, bytes);
+        assertThrows(IOException.class, () -> new TilePack(pack));
+
+        ByteBuffer.wrap(bytes).putInt(TilePack.MAGIC.length, -1);
+        Files.write(pack, bytes);
+        assertThrows(IOException.class, () -> new TilePack(pack));
+    }
+
+    @Test
+    void rejectsEntriesOutsideDataArea() throws Exception {
+        Path pack = writePack();
+        patch(pack, 1, 8, 4, false);
+        assertThrows(IOException.class, () -> new TilePack(pack));
+
+        Path negative = writePack();
+        patch(negative, 2, 16, -5, true);
+        assertThrows(IOException.class, () -> new TilePack(negative));
+    }
+
+    @Test
+    void rejectsUnsortedIndex() throws Exception {
+        Path pack = writePack();
+        patch(pack, 2, 0, TilePack.tileId(18, 97000, 148000), false);
+        assertThrows(IOException.class, () -> new TilePack(pack));
+    }
+}
@@ -0,0 +1,144 @@
+package com.sitka.satellite.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageRefreshSchedulerTest {
+
+    private ImageRefreshScheduler scheduler;
+
+    /** Intervalo de 1 minuto: nos testes, refreshNext é chamado diretamente */
+    private ImageRefreshScheduler scheduler(MemoryBudget budget) {
+        scheduler = new ImageRefreshScheduler(budget, true, 1);
+        return scheduler;
+    }
+
+    private static MemoryBudget budget() {
+        return new MemoryBudget(64L * 1024 * 1024, 10);
+    }
+
+    @AfterEach
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentScheduleOfSameKeyRunsOnce() throws Exception {
+        ImageRefreshScheduler refresher = scheduler(budget());
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    refresher.schedule("k", () -> calls.incrementAndGet() > 1);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        refresher.refreshNext();
+        refresher.refreshNext();
+        assertEquals(1, calls.get());
+        assertEquals(1L, refresher.snapshot().get("refreshes"));
+    }
+
+    @Test
+    void keyCannotBeScheduledWhileRunning() throws Exception {
+        ImageRefreshScheduler refresher = scheduler(budget());
+        AtomicInteger calls = new AtomicInteger();
+        refresher.schedule("k", () -> {
+            calls.incrementAndGet();
+            refresher.schedule("k", () -> {
+                calls.incrementAndGet();
+                return false;
+            });
+            return false;
+        });
+
+        refresher.refreshNext();
+        assertEquals(0, refresher.snapshot().get("pending"));
+
+        // Terminada a execução, a chave pode ser agendada de novo
+        refresher.schedule("k", () -> {
+            calls.incrementAndGet();
+            return true;
+        });
+        refresher.refreshNext();
+        assertEquals(2, calls.get());
+        assertEquals(1L, refresher.snapshot().get("changed"));
+    }
+
+    @Test
+    void mostAccessedPendingKeyRunsFirst() {
+        ImageRefreshScheduler refresher = scheduler(budget());
+        List<String> order = new ArrayList<>();
+        refresher.recordAccess("frio");
+        for (int i = 0; i < 5; i++) {
+            refresher.recordAccess("quente");
+        }
+        refresher.schedule("frio", () -> order.add("frio"));
+        refresher.schedule("quente", () -> order.add("quente"));
+
+        refresher.refreshNext();
+        refresher.refreshNext();
+        assertEquals(List.of("quente", "frio"), order);
+    }
+
+    @Test
+    void trackingLimitAgesCountsInsteadOfClearing() {
+        ImageRefreshScheduler refresher = scheduler(budget());
+        for (int i = 0; i < 8; i++) {
+            refresher.recordAccess("quente");
+        }
+        for (int i = 1; i < ImageRefreshScheduler.MAX_TRACKED_KEYS; i++) {
+            refresher.recordAccess("frio-" + i);
+        }
+
+        refresher.recordAccess("novo");
+        assertEquals(4, refresher.accessCount("quente"));
+        assertEquals(0, refresher.accessCount("frio-1"));
+        assertEquals(1, refresher.accessCount("novo"));
+    }
+
+    @Test
+    void refreshWaitsForMemoryBudget() throws Exception {
+        MemoryBudget budget = new MemoryBudget(SatelliteImageService.ESTIMATED_PIPELINE_BYTES, 10);
+        ImageRefreshScheduler refresher = scheduler(budget);
+        AtomicInteger calls = new AtomicInteger();
+        refresher.schedule("k", () -> calls.incrementAndGet() > 1);
+
+        try (MemoryBudget.Permit busy = budget.acquire(SatelliteImageService.ESTIMATED_PIPELINE_BYTES)) {
+            assertTrue(busy != null);
+            refresher.refreshNext();
+            assertEquals(0, calls.get());
+            assertEquals(1, refresher.snapshot().get("pending"));
+            assertEquals(1L, refresher.snapshot().get("deferred"));
+        }
+
+        refresher.refreshNext();
+        assertEquals(1, calls.get());
+        assertEquals(0, refresher.snapshot().get("pending"));
+    }
+}
@@ -0,0 +1,191 @@
+package com.sitka.satellite.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static byte[] png(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private long blobCount() throws Exception {
+        Path blobs = dir.resolve("blobs");
+        if (!Files.isDirectory(blobs)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(blobs)) {
+            return files.filter(p -> p.toString().endsWith(".png")).count();
+        }
+    }
+
+    @Test
+    void keyForIgnoresAccentsCaseAndPunctuation() {
+        assertEquals(ImageStore.keyFor("Av. São João, 100"), ImageStore.keyFor("av sao joao 100"));
+        assertTrue(ImageStore.isValidKey(ImageStore.keyFor("qualquer endereço")));
+        assertFalse(ImageStore.isValidKey("../../etc/passwd"));
+    }
+
+    @Test
+    void identicalContentIsStoredOnce() throws Exception {
+        ImageStore store = new ImageStore(dir.toString(), 10, 1024, 0);
+        String a = ImageStore.keyFor("a");
+        String b = ImageStore.keyFor("b");
+
+        ImageStore.StoredImage first = store.put(a, png("mesma imagem"));
+        ImageStore.StoredImage second = store.put(b, png("mesma imagem"));
+
+        assertEquals(first.getPath(), second.getPath());
+        assertEquals(first.getETag(), second.getETag());
+        assertEquals(1, blobCount());
+        assertEquals(1L, store.snapshot().get("dedup_hits"));
+        assertSame(second, store.put(b, png("mesma imagem")));
+    }
+
+    @Test
+    void blobIsDeletedOnlyWhenLastReferenceGoes() throws Exception {
+        ImageStore store = new ImageStore(dir.toString(), 10, 1024, 0);
+        String a = ImageStore.keyFor("a");
+        String b = ImageStore.keyFor("b");
+        Path shared = store.put(a, png("compartilhada")).getPath();
+        store.put(b, png("compartilhada"));
+
+        store.put(a, png("nova de a"));
+        assertTrue(Files.exists(shared));
+
+        store.put(b, png("nova de b"));
+        assertFalse(Files.exists(shared));
+        assertEquals(2, blobCount());
+    }
+
+    @Test
+    void evictionRemovesOldestKeyAndUnusedBlob() throws Exception {
+        ImageStore store = new ImageStore(dir.toString(), 2, 1024, 0);
+        String a = ImageStore.keyFor("a");
+        Path oldest = store.put(a, png("a")).getPath();
+        store.put(ImageStore.keyFor("b"), png("b"));
+        store.put(ImageStore.keyFor("c"), png("c"));
+
+        assertNull(store.get(a));
+        assertFalse(Files.exists(oldest));
+        assertFalse(Files.exists(dir.resolve(a + ".ref")));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void sizeCapEvictsOldestButKeepsNewest() throws Exception {
+        ImageStore store = new ImageStore(dir.toString(), 100, 1, 0);
+        byte[] big = new byte[700 * 1024];
+        String a = ImageStore.keyFor("a");
+        store.put(a, big);
+        big[0] = 1;
+        store.put(ImageStore.keyFor("b"), big);
+
+        assertNull(store.get(a));
+        assertEquals(1, store.size());
+        assertEquals(1, blobCount());
+
+        byte[] huge = new byte[2 * 1024 * 1024];
+        assertNotNull(store.put(ImageStore.keyFor("c"), huge));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void releasedBlobIsKeptDuringGracePeriod() throws Exception {
+        ImageStore store = new ImageStore(dir.toString(), 10, 1024, 60);
+        String a = ImageStore.keyFor("a");
+        Path old = store.put(a, png("antiga")).getPath();
+        store.put(a, png("nova"));
+
+        assertTrue(Files.exists(old), "blob ainda pode estar sendo servido");
+        assertEquals(1, store.snapshot().get("pending_deletes"));
+
+        Path reused = store.put(ImageStore.keyFor("b"), png("antiga")).getPath();
+        assertEquals(old, reused);
+        assertEquals(0, store.snapshot().get("pending_deletes"));
+    }
+
+    @Test
+    void indexIsRebuiltFromDiskAtStartup() throws Exception {
+        ImageStore first = new ImageStore(dir.toString(), 10, 1024, 0);
+        String a = ImageStore.keyFor("a");
+        String b = ImageStore.keyFor("b");
+        first.put(a, png("compartilhada"));
+        first.put(b, png("compartilhada"));
+        first.put(ImageStore.keyFor("c"), png("outra"));
+        long now = System.currentTimeMillis();
+        Files.setLastModifiedTime(dir.resolve(a + ".ref"), FileTime.fromMillis(now - 3000));
+        Files.setLastModifiedTime(dir.resolve(b + ".ref"), FileTime.fromMillis(now - 2000));
+        Files.write(dir.resolve("blobs").resolve("0".repeat(64) + ".png"), png("órfã"));
+        Files.write(dir.resolve(ImageStore.keyFor("quebrada") + ".ref"), "1".repeat(64).getBytes(StandardCharsets.US_ASCII));
+        Files.write(dir.resolve("blobs").resolve("x.tmp"), png("parcial"));
+
+        ImageStore reopened = new ImageStore(dir.toString(), 2, 1024, 0);
+
+        assertEquals(2, reopened.size());
+        assertNull(reopened.get(a), "a mais antiga sai pelo limite de entradas");
+        assertNotNull(reopened.get(b));
+        assertEquals(first.get(b).getETag(), reopened.get(b).getETag());
+        assertEquals(2, blobCount());
+        assertFalse(Files.exists(dir.resolve("blobs").resolve("x.tmp")));
+        assertFalse(Files.exists(dir.resolve(ImageStore.keyFor("quebrada") + ".ref")));
+
+        reopened.put(b, png("nova de b"));
+        assertTrue(Files.exists(reopened.get(ImageStore.keyFor("c")).getPath()));
+        assertEquals(2, blobCount());
+    }
+
+    @Test
+    void concurrentPutsNeverLeaveDanglingReferences() throws Exception {
+        ImageStore store = new ImageStore(dir.toString(), 8, 1024, 0);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                tasks.add(pool.submit(() -> {
+                    for (int i = 0; i < 300; i++) {
+                        String key = ImageStore.keyFor("endereco " + ((seed * 31 + i) % 20));
+                        store.put(key, png("conteudo " + (i % 3)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (int i = 0; i < 20; i++) {
+            ImageStore.StoredImage stored = store.get(ImageStore.keyFor("endereco " + i));
+            if (stored != null) {
+                assertTrue(Files.exists(stored.getPath()), "blob ausente para " + stored.getKey());
+            }
+        }
+        assertTrue(blobCount() <= 3);
+        assertNotNull(store.snapshot().get("distinct_images"));
+    }
+}
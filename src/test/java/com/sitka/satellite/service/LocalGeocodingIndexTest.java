@@ -0,0 +1,84 @@
+package com.sitka.satellite.service;
+
+import com.google.maps.model.LatLng;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LocalGeocodingIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private LocalGeocodingIndex index(String... lines) throws Exception {
+        Path file = dir.resolve("gazetteer.csv");
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return new LocalGeocodingIndex(file.toString());
+    }
+
+    @Test
+    void looksUpCepInsideAddress() throws Exception {
+        LocalGeocodingIndex index = index("# chave;lat;lng", "01310-100;-23.561414;-46.655881");
+
+        LatLng found = index.lookup("Av. Paulista, 1578 - Bela Vista, 01310100");
+
+        assertNotNull(found);
+        assertEquals(-23.561414, found.lat, 1e-6);
+        assertEquals(-46.655881, found.lng, 1e-6);
+    }
+
+    @Test
+    void looksUpFullNormalizedAddress() throws Exception {
+        LocalGeocodingIndex index = index("Av. Paulista 1000, São Paulo;-23.5645;-46.6525");
+
+        LatLng found = index.lookup("av paulista 1000 - sao paulo");
+
+        assertNotNull(found);
+        assertEquals(-23.5645, found.lat, 1e-6);
+    }
+
+    @Test
+    void streetInAnotherCityIsAMiss() throws Exception {
+        LocalGeocodingIndex index = index(
+                "rua xv de novembro;-23.5475;-46.6361",
+                "rua xv de novembro 100 sao paulo;-23.5480;-46.6360");
+
+        assertNull(index.lookup("Rua XV de Novembro 100, Curitiba"));
+        assertNull(index.lookup("Rua XV de Novembro 100"));
+        assertEquals(2, index.getMisses());
+        assertEquals(0, index.getHits());
+    }
+
+    @Test
+    void duplicateKeysKeepFirstOccurrenceAndLookupsStaySorted() throws Exception {
+        LocalGeocodingIndex index = index(
+                "zeta;3;3",
+                "alfa;1;1",
+                "Alfa;9;9",
+                "meio;2;2",
+                "linha invalida",
+                "lat;x;y");
+
+        assertEquals(3, index.size());
+        assertEquals(1, index.lookup("ALFA").lat, 1e-6);
+        assertEquals(2, index.lookup("meio").lat, 1e-6);
+        assertEquals(3, index.lookup("zeta").lat, 1e-6);
+        assertNull(index.lookup("alf"));
+    }
+
+    @Test
+    void missingFileDisablesIndex() {
+        LocalGeocodingIndex index = new LocalGeocodingIndex(dir.resolve("nao-existe.csv").toString());
+
+        assertFalse(index.isEnabled());
+        assertNull(index.lookup("01310-100"));
+    }
+}
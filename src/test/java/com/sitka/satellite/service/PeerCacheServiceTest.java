@@ -0,0 +1,94 @@
+package com.sitka.satellite.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PeerCacheServiceTest {
+
+    private static final List<String> PEERS = List.of("http://a:8080", "http://b:8080/", "http://c:8080");
+    private static final int KEYS = 20_000;
+
+    private static PeerCacheService node(String self, List<String> peers) {
+        return new PeerCacheService(true, self, peers, "segredo", 128, 1000, 86400);
+    }
+
+    private static String key(int i) {
+        return ImageStore.keyFor("Rua Teste, " + i);
+    }
+
+    /** Dona de cada chave vista de uma instância (a própria instância quando ownerOf devolve null) */
+    private static String owner(PeerCacheService node, String self, String key) {
+        String owner = node.ownerOf(key);
+        return owner == null ? self : owner;
+    }
+
+    @Test
+    void everyNodeAgreesOnTheOwner() {
+        PeerCacheService a = node("http://a:8080", PEERS);
+        PeerCacheService b = node("http://b:8080", PEERS);
+        PeerCacheService c = node("http://c:8080/", PEERS);
+        for (int i = 0; i < 1000; i++) {
+            String key = key(i);
+            String owner = owner(a, "http://a:8080", key);
+            assertEquals(owner, owner(b, "http://b:8080", key));
+            assertEquals(owner, owner(c, "http://c:8080", key));
+        }
+    }
+
+    @Test
+    void keysAreSpreadAcrossNodes() {
+        PeerCacheService a = node("http://a:8080", PEERS);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(owner(a, "http://a:8080", key(i)), 1, Integer::sum);
+        }
+        assertEquals(3, counts.size());
+        for (int count : counts.values()) {
+            // 128 nós virtuais: cada instância fica perto de 1/3 das chaves
+            assertTrue(count > KEYS / 3 * 0.8 && count < KEYS / 3 * 1.2, counts.toString());
+        }
+    }
+
+    @Test
+    void addingANodeOnlyMovesKeysToIt() {
+        PeerCacheService before = node("http://a:8080", PEERS);
+        PeerCacheService after = node("http://a:8080", List.of("http://a:8080", "http://b:8080", "http://c:8080", "http://d:8080"));
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = key(i);
+            String old = owner(before, "http://a:8080", key);
+            String now = owner(after, "http://a:8080", key);
+            if (!old.equals(now)) {
+                assertEquals("http://d:8080", now);
+                moved++;
+            }
+        }
+        assertTrue(moved > KEYS / 4 * 0.8 && moved < KEYS / 4 * 1.2, "movidas: " + moved);
+    }
+
+    @Test
+    void disabledWithoutTokenOrPeers() {
+        assertFalse(new PeerCacheService(true, "http://a:8080", PEERS, "", 128, 1000, 86400).isEnabled());
+        assertFalse(node("http://a:8080", List.of("http://a:8080")).isEnabled());
+        assertFalse(node("", PEERS).isEnabled());
+        assertNull(new PeerCacheService(false, "http://a:8080", PEERS, "segredo", 128, 1000, 86400).ownerOf(key(1)));
+    }
+
+    @Test
+    void internalEndpointRequiresConfiguredToken() {
+        assertTrue(node("http://a:8080", PEERS).isAuthorized("segredo"));
+        assertFalse(node("http://a:8080", PEERS).isAuthorized("outro"));
+        assertFalse(node("http://a:8080", PEERS).isAuthorized(null));
+        PeerCacheService semToken = new PeerCacheService(true, "http://a:8080", PEERS, "", 128, 1000, 86400);
+        assertFalse(semToken.isAuthorized(""));
+        assertFalse(semToken.isAuthorized(null));
+    }
+}
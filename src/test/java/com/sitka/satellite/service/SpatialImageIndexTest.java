@@ -0,0 +1,118 @@
+package com.sitka.satellite.service;
+
+import com.sitka.satellite.geo.WebMercator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpatialImageIndexTest {
+
+    private static final double LAT = -23.561414;
+    private static final double LNG = -46.655881;
+    private static final int ZOOM = 19;
+
+    @TempDir
+    Path dir;
+
+    private SpatialImageIndex index(double maxDistanceMeters, int maxEntries) {
+        return new SpatialImageIndex(new ImageStore(dir.toString(), 100, 1024, 0), true, maxDistanceMeters, maxEntries);
+    }
+
+    private static byte[] png(int size, int rgb) throws Exception {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setRGB(x, y, rgb ^ (x * 31 + y));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    /** Longitude deslocada dx pixels a leste do centro, no zoom do teste */
+    private static double shiftedLng(double dx) {
+        return WebMercator.lng(WebMercator.worldX(LNG, ZOOM) + dx, ZOOM);
+    }
+
+    @Test
+    void reusesImageWhileViewFitsInsideMargin() throws Exception {
+        SpatialImageIndex index = index(0, 8);
+        SpatialImageIndex.Entry entry = index.put(LAT, LNG, ZOOM, 640, 640, png(640, 0x336699));
+
+        assertSame(entry, index.lookup(LAT, LNG, ZOOM, 600, 600));
+        assertSame(entry, index.lookup(LAT, shiftedLng(15), ZOOM, 600, 600));
+        assertNull(index.lookup(LAT, shiftedLng(30), ZOOM, 600, 600), "30 px passa da margem de 20 px");
+        assertNull(index.lookup(LAT, LNG, ZOOM - 1, 600, 600));
+    }
+
+    @Test
+    void explicitDistanceAllowsShiftedCrops() throws Exception {
+        SpatialImageIndex index = index(15, 8);
+        SpatialImageIndex.Entry entry = index.put(LAT, LNG, ZOOM, 640, 640, png(640, 0x336699));
+
+        double metersPerPixel = WebMercator.metersPerPixel(LAT, ZOOM);
+        assertSame(entry, index.lookup(LAT, shiftedLng(10 / metersPerPixel), ZOOM, 600, 600));
+        assertNull(index.lookup(LAT, shiftedLng(20 / metersPerPixel), ZOOM, 600, 600));
+    }
+
+    @Test
+    void distantMatchMustContainPointAndMarker() throws Exception {
+        // Raio generoso: a distância sozinha aceitaria qualquer ponto abaixo
+        SpatialImageIndex index = index(500, 8);
+        SpatialImageIndex.Entry entry = index.put(LAT, LNG, ZOOM, 640, 640, png(640, 0x336699));
+
+        assertSame(entry, index.lookup(LAT, shiftedLng(200), ZOOM, 600, 600));
+        assertNull(index.lookup(LAT, shiftedLng(300), ZOOM, 600, 600), "marcador passaria da borda");
+        assertNull(index.lookup(LAT, shiftedLng(400), ZOOM, 600, 600), "ponto fora da imagem");
+    }
+
+    @Test
+    void findRendersRequestedViewFromStoredBlob() throws Exception {
+        SpatialImageIndex index = index(0, 8);
+        index.put(LAT, LNG, ZOOM, 640, 640, png(640, 0x336699));
+
+        BufferedImage view = index.find(LAT, shiftedLng(5), ZOOM, 600, 600);
+        assertNotNull(view);
+        assertEquals(600, view.getWidth());
+        assertEquals(600, view.getHeight());
+        assertEquals(1, index.getHits());
+
+        assertNull(index.find(LAT, shiftedLng(300), ZOOM, 600, 600));
+        assertEquals(1, index.getMisses());
+    }
+
+    @Test
+    void evictedEntriesReleaseTheirBlobs() throws Exception {
+        ImageStore store = new ImageStore(dir.toString(), 100, 1024, 0);
+        SpatialImageIndex index = new SpatialImageIndex(store, true, 0, 1);
+        SpatialImageIndex.Entry first = index.put(LAT, LNG, ZOOM, 640, 640, png(640, 0x336699));
+        Path firstBlob = store.blobPath(first.contentHash);
+        assertTrue(Files.exists(firstBlob));
+
+        SpatialImageIndex.Entry second = index.put(LAT, shiftedLng(2000), ZOOM, 640, 640, png(640, 0x996633));
+
+        assertFalse(Files.exists(firstBlob));
+        assertTrue(Files.exists(store.blobPath(second.contentHash)));
+        assertNull(index.lookup(LAT, LNG, ZOOM, 600, 600));
+    }
+
+    @Test
+    void disabledIndexNeverMatches() throws Exception {
+        SpatialImageIndex index = new SpatialImageIndex(new ImageStore(dir.toString(), 100, 1024, 0), false, 0, 8);
+        index.put(LAT, LNG, ZOOM, 640, 640, png(640, 0x336699));
+        assertNull(index.lookup(LAT, LNG, ZOOM, 600, 600));
+    }
+}
@@ -0,0 +1,65 @@
+package com.sitka.satellite.service;
+
+import org.apache.http.HttpHost;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.HttpHostConnectException;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WatiBroadcastServiceTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    void retryAfterInSeconds() {
+        assertEquals(3000, WatiBroadcastService.retryAfterMillis("3", NOW));
+        assertEquals(0, WatiBroadcastService.retryAfterMillis("0", NOW));
+    }
+
+    @Test
+    void retryAfterAsHttpDate() {
+        String header = DateUtils.formatDate(new Date(NOW + 5000));
+        long millis = WatiBroadcastService.retryAfterMillis(header, NOW);
+        // Datas HTTP têm resolução de segundos
+        assertTrue(millis > 4000 && millis <= 5000, "ms: " + millis);
+        assertEquals(0, WatiBroadcastService.retryAfterMillis(DateUtils.formatDate(new Date(NOW - 5000)), NOW));
+    }
+
+    @Test
+    void retryAfterIsCappedAndIgnoresGarbage() {
+        assertEquals(WatiBroadcastService.MAX_RETRY_AFTER_MS, WatiBroadcastService.retryAfterMillis("3600", NOW));
+        assertEquals(WatiBroadcastService.MAX_RETRY_AFTER_MS,
+                WatiBroadcastService.retryAfterMillis("99999999999999999999", NOW));
+        assertEquals(0, WatiBroadcastService.retryAfterMillis(null, NOW));
+        assertEquals(0, WatiBroadcastService.retryAfterMillis("amanhã", NOW));
+    }
+
+    @Test
+    void retriesOnlyWhenMessageCannotHaveBeenSent() {
+        assertTrue(WatiBroadcastService.isNotSent(new ConnectTimeoutException("connect timed out")));
+        assertTrue(WatiBroadcastService.isNotSent(
+                new HttpHostConnectException(new ConnectException("refused"), new HttpHost("wati"))));
+        // Pedido já enviado: a resposta se perdeu, mas a mensagem pode ter saído
+        assertFalse(WatiBroadcastService.isNotSent(new SocketTimeoutException("Read timed out")));
+        assertFalse(WatiBroadcastService.isNotSent(new NoHttpResponseException("no response")));
+    }
+
+    @Test
+    void retriesOnlyRejectedStatuses() {
+        assertTrue(WatiBroadcastService.isRetryableStatus(429));
+        assertTrue(WatiBroadcastService.isRetryableStatus(503));
+        assertFalse(WatiBroadcastService.isRetryableStatus(500));
+        assertFalse(WatiBroadcastService.isRetryableStatus(502));
+        assertFalse(WatiBroadcastService.isRetryableStatus(504));
+        assertFalse(WatiBroadcastService.isRetryableStatus(400));
+    }
+}
@@ -0,0 +1,117 @@
+package com.sitka.satellite.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WatiWebhookServiceTest {
+
+    /** Envios recebidos pelo FanOutService falso (nada sai para o Google ou o WATI) */
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+
+    private final FanOutService fanOut = new FanOutService(1) {
+        @Override
+        public Map<String, Object> sendToRecipients(String endereco, List<String> telefones) {
+            sent.add(endereco);
+            return Collections.singletonMap("ok", true);
+        }
+    };
+
+    private final WatiWebhookService service =
+            new WatiWebhookService(fanOut, "segredo", 1, 10, 100, 8, List.of("imagem", "endereço"));
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+        fanOut.shutdown();
+    }
+
+    @Test
+    void tokenIsRequired() {
+        assertTrue(service.isAuthorized("segredo"));
+        assertFalse(service.isAuthorized("outro"));
+        assertFalse(service.isAuthorized(null));
+
+        WatiWebhookService semToken = new WatiWebhookService(fanOut, "", 1, 10, 100, 8, List.of("imagem"));
+        try {
+            assertFalse(semToken.isAuthorized(""));
+            assertFalse(semToken.isAuthorized(null));
+        } finally {
+            semToken.shutdown();
+        }
+    }
+
+    private static Map<String, Object> message(String text, String id, String timestamp) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("eventType", "message");
+        payload.put("type", "text");
+        payload.put("waId", "5511989838304");
+        payload.put("text", text);
+        if (id != null) {
+            payload.put("whatsappMessageId", id);
+        }
+        if (timestamp != null) {
+            payload.put("timestamp", timestamp);
+        }
+        return payload;
+    }
+
+    @Test
+    void acceptsStreetWithNumberOrCep() {
+        assertEquals("Rua Augusta, 1500, São Paulo", service.addressFrom("  Rua   Augusta, 1500, São Paulo "));
+        assertEquals("Av. Paulista 1000", service.addressFrom("Av. Paulista 1000"));
+        assertEquals("Praça da Sé, 1", service.addressFrom("Praça da Sé, 1"));
+        assertEquals("CEP 01310-100", service.addressFrom("CEP 01310-100"));
+    }
+
+    @Test
+    void ignoresChatThatMerelyHasDigits() {
+        assertNull(service.addressFrom("Meu pedido 12345"));
+        assertNull(service.addressFrom("bom dia, são 10 horas"));
+        assertNull(service.addressFrom("Rua Augusta"));
+        assertNull(service.addressFrom("R 1"));
+        assertNull(service.addressFrom(null));
+    }
+
+    @Test
+    void keywordMarksAnyTextAsAddress() {
+        assertEquals("Condomínio Alphaville 2", service.addressFrom("imagem Condomínio Alphaville 2"));
+        assertEquals("Fazenda Santa Rita, Itu", service.addressFrom("/IMAGEM: Fazenda Santa Rita, Itu"));
+        assertEquals("Sítio Boa Vista", service.addressFrom("Endereco - Sítio Boa Vista"));
+        assertNull(service.addressFrom("imagem curta"));
+    }
+
+    @Test
+    void messagesWithoutIdAreDeduplicatedByContent() {
+        Map<String, Object> first = message("Rua Augusta, 1500", null, "1700000000");
+        assertEquals(WatiWebhookService.Outcome.QUEUED, service.accept(first));
+        assertEquals(WatiWebhookService.Outcome.DUPLICATE, service.accept(new HashMap<>(first)));
+        // Mesmo texto em outro momento é um novo pedido
+        assertEquals(WatiWebhookService.Outcome.QUEUED,
+                service.accept(message("Rua Augusta, 1500", null, "1700000600")));
+    }
+
+    @Test
+    void messagesWithIdAreDeduplicatedById() throws Exception {
+        assertEquals(WatiWebhookService.Outcome.QUEUED, service.accept(message("Rua Augusta, 1500", "wamid.1", null)));
+        assertEquals(WatiWebhookService.Outcome.DUPLICATE, service.accept(message("Rua Augusta, 1500", "wamid.1", null)));
+        assertEquals(WatiWebhookService.Outcome.IGNORED, service.accept(message("oi, tudo bem?", "wamid.2", null)));
+
+        // Só o pedido aceito chega ao envio, uma única vez
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Long.valueOf(1).equals(service.snapshot().get("processed")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of("Rua Augusta, 1500"), sent);
+    }
+}
@@ -0,0 +1,46 @@
+package com.sitka.satellite.timing;
+
+import com.sitka.satellite.service.ImageStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class StageTimerTest {
+
+    private static final String ENDERECO = "Av. Paulista, 1000, São Paulo";
+
+    @AfterEach
+    void resetSalt() {
+        StageTimer.setAddressSalt("");
+    }
+
+    @Test
+    void addressHashIsNotThePlainImageKey() {
+        StageTimer.setAddressSalt("");
+        assertNotEquals(ImageStore.keyFor(ENDERECO), StageTimer.addressHash(ENDERECO));
+        assertEquals(32, StageTimer.addressHash(ENDERECO).length());
+    }
+
+    @Test
+    void sameSaltGivesSameHashForEquivalentAddresses() {
+        StageTimer.setAddressSalt("segredo");
+        String hash = StageTimer.addressHash(ENDERECO);
+        assertEquals(hash, StageTimer.addressHash("  av. paulista,   1000, SÃO PAULO "));
+
+        StageTimer.setAddressSalt("outro");
+        assertNotEquals(hash, StageTimer.addressHash(ENDERECO));
+
+        StageTimer.setAddressSalt("segredo");
+        assertEquals(hash, StageTimer.addressHash(ENDERECO));
+    }
+
+    @Test
+    void emptySaltUsesNewRandomKey() {
+        StageTimer.setAddressSalt("");
+        String first = StageTimer.addressHash(ENDERECO);
+        StageTimer.setAddressSalt("");
+        assertNotEquals(first, StageTimer.addressHash(ENDERECO));
+    }
+}
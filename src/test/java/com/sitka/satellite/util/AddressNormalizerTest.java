@@ -0,0 +1,16 @@
+package com.sitka.satellite.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AddressNormalizerTest {
+
+    @Test
+    void removesAccentsCaseAndPunctuation() {
+        assertEquals("av sao joao 1000 sao paulo sp",
+                AddressNormalizer.normalize("  Av. São João, 1000 - São Paulo/SP "));
+        assertEquals("rua xv de novembro", AddressNormalizer.normalize("RUA XV DE NOVEMBRO"));
+        assertEquals("", AddressNormalizer.normalize(" ,.- "));
+    }
+}
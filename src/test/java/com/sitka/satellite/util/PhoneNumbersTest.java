@@ -0,0 +1,34 @@
+package com.sitka.satellite.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PhoneNumbersTest {
+
+    @Test
+    void digitsStripsMaskAndHandlesNull() {
+        assertEquals("5511976169677", PhoneNumbers.digits("+55 (11) 97616-9677"));
+        assertEquals("", PhoneNumbers.digits(null));
+        assertEquals("", PhoneNumbers.digits("sem número"));
+    }
+
+    @Test
+    void uniqueKeepsFirstItemPerPhoneInOrder() {
+        List<String[]> recipients = Arrays.asList(
+                new String[]{"+55 11 98983-8304", "primeiro"},
+                new String[]{"5511976169677", "segundo"},
+                new String[]{"5511989838304", "repetido"},
+                new String[]{null, "sem telefone"},
+                new String[]{"---", "sem dígitos"});
+
+        Map<String, String[]> unique = PhoneNumbers.unique(recipients, r -> r[0]);
+
+        assertEquals(List.of("5511989838304", "5511976169677"), List.copyOf(unique.keySet()));
+        assertEquals("primeiro", unique.get("5511989838304")[1]);
+    }
+}